@@ -22,6 +22,8 @@
 
 package com.sforce.cd.apexUnit;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -32,10 +34,15 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterDescription;
 import com.sforce.cd.apexUnit.arguments.CommandLineArguments;
 import com.sforce.cd.apexUnit.client.codeCoverage.CodeCoverageComputer;
+import com.sforce.cd.apexUnit.client.codeCoverage.TestSuiteMinimizer;
+import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
 import com.sforce.cd.apexUnit.client.testEngine.TestExecutor;
 import com.sforce.cd.apexUnit.client.testEngine.TestStatusPollerAndResultHandler;
+import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
+import com.sforce.cd.apexUnit.client.utils.ClassRegistry;
 import com.sforce.cd.apexUnit.report.ApexClassCodeCoverageBean;
 import com.sforce.cd.apexUnit.report.ApexCodeCoverageReportGenerator;
+import com.sforce.cd.apexUnit.report.ApexMethodCodeCoverageBean;
 import com.sforce.cd.apexUnit.report.ApexReportBean;
 import com.sforce.cd.apexUnit.report.ApexUnitTestReportGenerator;
 import com.sforce.cd.apexUnit.report.ApexUnitCodeCoverageResults;
@@ -65,6 +72,11 @@ public class ApexUnitRunner {
 				&& !skipCodeCoverageComputation) {
 			ApexUnitUtils.shutDownWithErrMsg("Either of the source class manifest file or source class regex should be provided");
 		}
+		if (CommandLineArguments.isSelectImpactedTests()
+				&& (CommandLineArguments.getTestCoverageIndexFile() == null || skipCodeCoverageComputation)) {
+			ApexUnitUtils.shutDownWithErrMsg("Selecting the impacted tests requires the test coverage index file and "
+					+ "the code coverage computation to keep the index up to date");
+		}
 		// Invoke the FlowController.logicalFlow() that handles the entire
 		// logical flow of ApexUnit tool.
 		TestExecutor testExecutor = new TestExecutor();
@@ -90,6 +102,21 @@ public class ApexUnitRunner {
 			// records
 			// are ordered in ascending order of code coverage percentage
 			Arrays.sort(apexClassCodeCoverageBeans);
+			if (CommandLineArguments.getTestCoverageIndexFile() != null
+					|| CommandLineArguments.getMinimizedTestManifestFile() != null) {
+				List<ApexMethodCodeCoverageBean> methodCodeCoverageRecords = toolingAPIInvoker
+						.calculateTestMethodCodeCoverage(apexClassCodeCoverageBeans);
+				// index the code coverage of the source classes by each test
+				// method for the later runs
+				if (CommandLineArguments.getTestCoverageIndexFile() != null) {
+					toolingAPIInvoker.buildTestCoverageIndex(methodCodeCoverageRecords,
+							new File(CommandLineArguments.getTestCoverageIndexFile()));
+				}
+				if (CommandLineArguments.getMinimizedTestManifestFile() != null) {
+					writeMinimizedTestManifest(methodCodeCoverageRecords, apexReportBeans,
+							new File(CommandLineArguments.getMinimizedTestManifestFile()));
+				}
+			}
 			// computes org wide code coverage
 			toolingAPIInvoker.getOrgWideCodeCoverage();
 			// generate the reports for publishing
@@ -101,6 +128,7 @@ public class ApexUnitRunner {
 		}
 		Long end = System.currentTimeMillis();
 		LOG.debug("Total Time taken by ApexUnit tool in secs: " + (end - start) / 1000);
+		LOG.debug("Apex class registry: " + ClassRegistry.getClassRegistryInstance().getStats());
 		if (apexReportBeans != null && apexReportBeans.length > 0) {
 			LOG.info("Total test methods executed: " + apexReportBeans.length);
 			String reportFile = "ApexUnitReport.xml";
@@ -163,6 +191,43 @@ public class ApexUnitRunner {
 
 	}
 
+	/*
+	 * Computes a minimal set of test classes preserving the code coverage of
+	 * the source classes(see TestSuiteMinimizer), writes it as a manifest file
+	 * and logs the run time saved
+	 * 
+	 * @param methodCodeCoverageRecords - code coverage of the source classes
+	 * by each test method
+	 * 
+	 * @param apexReportBeans - results of the test methods of the run
+	 * 
+	 * @param manifestFile - file to write the manifest to
+	 */
+	private static void writeMinimizedTestManifest(List<ApexMethodCodeCoverageBean> methodCodeCoverageRecords,
+			ApexReportBean[] apexReportBeans, File manifestFile) {
+		TestSuiteMinimizer testSuiteMinimizer = new TestSuiteMinimizer(methodCodeCoverageRecords, apexReportBeans);
+		List<String> selectedTestClassIds = testSuiteMinimizer.minimize();
+		ApexClassFetcherUtils.fetchApexClassNamesFromIds(ConnectionHandler.getConnectionHandlerInstance()
+				.getConnection(), selectedTestClassIds);
+		try {
+			testSuiteMinimizer.writeManifest(manifestFile, ClassRegistry.getClassRegistryInstance().getApexClassNames(
+					selectedTestClassIds));
+		} catch (IOException e) {
+			ApexUnitUtils.shutDownWithDebugLog(e, "Unable to write the minimized test manifest to "
+					+ manifestFile.getAbsolutePath() + ": " + e.getMessage());
+		}
+		long fullRunTime = testSuiteMinimizer.getFullRunTime();
+		long selectedRunTime = testSuiteMinimizer.getSelectedRunTime();
+		LOG.info("####################################   Summary of the test suite minimization  #################################### ");
+		LOG.info(selectedTestClassIds.size() + " out of " + testSuiteMinimizer.getTestClassCount()
+				+ " test classes cover all the " + testSuiteMinimizer.getCoveredLineCount()
+				+ " covered lines of the source classes. Manifest written to " + manifestFile.getAbsolutePath());
+		String savedPercentage = fullRunTime > 0 ? String.format("(%.2f%%)", (fullRunTime - selectedRunTime) * 100.0
+				/ fullRunTime) : "";
+		LOG.info("Estimated test run time: " + selectedRunTime / 1000 + " secs instead of " + fullRunTime / 1000
+				+ " secs; saving " + (fullRunTime - selectedRunTime) / 1000 + " secs" + savedPercentage);
+	}
+
 	/*
 	 * Log command line options for -help option
 	 * @param jcommander - JCommander instance 
@@ -36,6 +36,25 @@ public class CommandLineArguments {
 	public static final String PROXY_HOST = "-proxy.host";
 	public static final String PROXY_PORT = "-proxy.port";
 	public static final String TEST_RELOAD = "-test.reload";
+	public static final String MAX_TEST_BATCHES_IN_FLIGHT = "-max.test.batches.in.flight";
+	public static final String TEST_STATUS_POLLING_INTERVAL = "-test.status.polling.interval";
+	public static final String QUERY_BATCH_SIZE = "-query.batch.size";
+	public static final String METADATA_CACHE_DIR = "-metadata.cache.dir";
+	public static final String USE_JAVA_REGEX = "-use.java.regex";
+	public static final String EXCLUDE_REGEX_FOR_TEST_CLASSES = "-exclude.regex.for.test.classes";
+	public static final String EXCLUDE_REGEX_FOR_SOURCE_CLASSES = "-exclude.regex.for.source.classes";
+	public static final String COVERAGE_LINE_DETAILS = "-coverage.line.details";
+	public static final String TEST_COVERAGE_INDEX_FILE = "-test.coverage.index.file";
+	public static final String SELECT_IMPACTED_TESTS = "-select.impacted.tests";
+	public static final String CHANGED_CLASSES = "-changed.classes";
+	public static final String MAX_TEST_COVERAGE_INDEX_AGE = "-max.test.coverage.index.age";
+	public static final String MINIMIZED_TEST_MANIFEST_FILE = "-minimized.test.manifest.file";
+	// values for COVERAGE_LINE_DETAILS
+	public static final String COVERAGE_LINE_DETAILS_ALL = "all";
+	public static final String COVERAGE_LINE_DETAILS_BELOW_THRESHOLD = "below.threshold";
+	public static final String COVERAGE_LINE_DETAILS_NONE = "none";
+	public static final String[] COVERAGE_LINE_DETAILS_VALUES = { COVERAGE_LINE_DETAILS_ALL,
+			COVERAGE_LINE_DETAILS_BELOW_THRESHOLD, COVERAGE_LINE_DETAILS_NONE };
 	
 	public static final String HELP = "-help";
 
@@ -79,6 +98,44 @@ public class CommandLineArguments {
 	static private boolean help;
 	@Parameter(names = TEST_RELOAD, description = "Want to reload test if same class changes submitted again.", arity=1)
 	static private boolean testReload;
+	@Parameter(names = MAX_TEST_BATCHES_IN_FLIGHT, description = "Maximum number of test batches(of upto 200 test classes each) "
+			+ "submitted to the test execution engine at the same time. Defaults to 1, i.e. batches are executed one after the other", validateWith = PositiveIntegerValidator.class, variableArity = true)
+	static private Integer maxTestBatchesInFlight = 1;
+	@Parameter(names = TEST_STATUS_POLLING_INTERVAL, description = "Interval(in seconds) between the queries polling the execution status of the tests", validateWith = PositiveIntegerValidator.class, variableArity = true)
+	static private Integer testStatusPollingInterval = 1;
+	@Parameter(names = QUERY_BATCH_SIZE, description = "Number of records fetched per round trip for the queries fired against the org. "
+			+ "Valid values range from 200 to 2000", validateWith = PositiveIntegerValidator.class, variableArity = true)
+	static private Integer queryBatchSize = 2000;
+	@Parameter(names = METADATA_CACHE_DIR, description = "Directory for caching the metadata of the Apex classes and triggers of the org across the runs. "
+			+ "The metadata is fetched from the org on every run if not given", variableArity = true)
+	static private String metadataCacheDir;
+	@Parameter(names = USE_JAVA_REGEX, description = "Treat the regexes as java regular expressions and match them against the names of "
+			+ "all the Apex classes fetched from the org at once, instead of firing a query per regex", arity = 1)
+	static private boolean useJavaRegex;
+	@Parameter(names = EXCLUDE_REGEX_FOR_TEST_CLASSES, description = "Regexes for the test classes to be left out of the test classes selected "
+			+ "using the test regex", variableArity = true)
+	static private String testExcludeRegex;
+	@Parameter(names = EXCLUDE_REGEX_FOR_SOURCE_CLASSES, description = "Regexes for the source classes to be left out of the source classes selected "
+			+ "using the source regex", variableArity = true)
+	static private String sourceExcludeRegex;
+	@Parameter(names = COVERAGE_LINE_DETAILS, description = "Classes for which the covered/uncovered lines are fetched for the code coverage report: "
+			+ "all, below.threshold(classes below the team code coverage threshold) or none", validateWith = CoverageLineDetailsValidator.class, variableArity = true)
+	static private String coverageLineDetails = COVERAGE_LINE_DETAILS_ALL;
+	@Parameter(names = TEST_COVERAGE_INDEX_FILE, description = "File to write the index of the code coverage of the source classes by each test method to. "
+			+ "The index is not built if not given", variableArity = true)
+	static private String testCoverageIndexFile;
+	@Parameter(names = SELECT_IMPACTED_TESTS, description = "Run only the test classes covering the Apex classes changed since the last run, "
+			+ "as per the test coverage index. Requires " + TEST_COVERAGE_INDEX_FILE, arity = 1)
+	static private boolean selectImpactedTests;
+	@Parameter(names = CHANGED_CLASSES, description = "Comma separated names of the changed Apex classes/triggers for selecting the impacted tests. "
+			+ "The classes modified in the org since the last run are used if not given", variableArity = true)
+	static private String changedClasses;
+	@Parameter(names = MAX_TEST_COVERAGE_INDEX_AGE, description = "Maximum age(in hours) of the test coverage index for selecting the impacted tests. "
+			+ "All the tests are run if the index is older", validateWith = PositiveIntegerValidator.class, variableArity = true)
+	static private Integer maxTestCoverageIndexAge = 24;
+	@Parameter(names = MINIMIZED_TEST_MANIFEST_FILE, description = "File to write the manifest of a minimal set of test classes "
+			+ "preserving the code coverage of the source classes to", variableArity = true)
+	static private String minimizedTestManifestFile;
 
 	/*
 	 * Static getter methods for each of the CLI parameter
@@ -152,5 +209,57 @@ public class CommandLineArguments {
 	public static boolean isTestReload() {
 		return testReload;
 	}
+
+	public static Integer getMaxTestBatchesInFlight() {
+		return maxTestBatchesInFlight;
+	}
+
+	public static Integer getTestStatusPollingInterval() {
+		return testStatusPollingInterval;
+	}
+
+	public static Integer getQueryBatchSize() {
+		return queryBatchSize;
+	}
+
+	public static String getMetadataCacheDir() {
+		return metadataCacheDir;
+	}
+
+	public static boolean isUseJavaRegex() {
+		return useJavaRegex;
+	}
+
+	public static String getTestExcludeRegex() {
+		return testExcludeRegex;
+	}
+
+	public static String getSourceExcludeRegex() {
+		return sourceExcludeRegex;
+	}
+
+	public static String getCoverageLineDetails() {
+		return coverageLineDetails;
+	}
+
+	public static String getTestCoverageIndexFile() {
+		return testCoverageIndexFile;
+	}
+
+	public static boolean isSelectImpactedTests() {
+		return selectImpactedTests;
+	}
+
+	public static String getChangedClasses() {
+		return changedClasses;
+	}
+
+	public static Integer getMaxTestCoverageIndexAge() {
+		return maxTestCoverageIndexAge;
+	}
+
+	public static String getMinimizedTestManifestFile() {
+		return minimizedTestManifestFile;
+	}
 }
 
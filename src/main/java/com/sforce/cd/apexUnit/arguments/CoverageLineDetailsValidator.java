@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Validator class to validate the value of the parameter selecting the classes for which the covered/uncovered lines are fetched
+ */
+
+package com.sforce.cd.apexUnit.arguments;
+
+import java.util.Arrays;
+
+import com.beust.jcommander.IParameterValidator;
+import com.beust.jcommander.ParameterException;
+import com.sforce.cd.apexUnit.ApexUnitUtils;
+
+public class CoverageLineDetailsValidator implements IParameterValidator {
+	/*
+	 * Validates if the given value is one of
+	 * CommandLineArguments.COVERAGE_LINE_DETAILS_VALUES (non-Javadoc)
+	 * 
+	 * @see com.beust.jcommander.IParameterValidator#validate(java.lang.String,
+	 * java.lang.String)
+	 * 
+	 * @param name - name of the parameter
+	 * 
+	 * @param value - value passed to the parameter
+	 */
+	public void validate(String name, String value) throws ParameterException {
+		for (String validValue : CommandLineArguments.COVERAGE_LINE_DETAILS_VALUES) {
+			if (validValue.equalsIgnoreCase(value)) {
+				return;
+			}
+		}
+		ApexUnitUtils.shutDownWithErrMsg("ParameterException: Input value for the Parameter " + name
+				+ " should be one of " + Arrays.toString(CommandLineArguments.COVERAGE_LINE_DETAILS_VALUES)
+				+ " (found " + value + ")");
+	}
+}
@@ -14,6 +14,12 @@
 
 package com.sforce.cd.apexUnit.client;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +30,12 @@ import com.sforce.soap.partner.sobject.SObject;
  */
 public class QueryConstructor {
 	private static Logger logger = LoggerFactory.getLogger(QueryConstructor.class);
+	// maximum length of a soql query fired using the partner(SOAP) API
+	public static final int MAX_SOQL_LENGTH = 20000;
+	// maximum length of a url encoded soql query fired using the Tooling(REST)
+	// API. The query is part of the request URL, whose length is limited by
+	// the org and the proxies in between
+	public static final int MAX_URL_ENCODED_SOQL_LENGTH = 8000;
 	/*
 	 * construct query that fetches Id and Name of the ApexClass based on regex
 	 * provided by the user * is converted to % in the regex. If no * is found
@@ -58,6 +70,44 @@ public class QueryConstructor {
 		return soql;
 	}
 
+	/*
+	 * construct query that fetches Id and Name of all the ApexClasses in the
+	 * given namespace
+	 * 
+	 * @return - Query to fetch apex classes as String
+	 */
+	public static String generateQueryToFetchApexClassCatalog(String namespace) {
+		String soql = "SELECT Id , Name FROM ApexClass WHERE NamespacePrefix =" + escapeSingleQuote(namespace);
+		return soql;
+	}
+
+	/*
+	 * construct query that fetches Id and Name of all the ApexTriggers in the
+	 * given namespace
+	 * 
+	 * @return - Query to fetch apex triggers as String
+	 */
+	public static String generateQueryToFetchApexTriggerCatalog(String namespace) {
+		String soql = "SELECT Id , Name FROM ApexTrigger WHERE NamespacePrefix =" + escapeSingleQuote(namespace);
+		return soql;
+	}
+
+	/*
+	 * construct query that fetches Id and Name of the ApexClasses(or
+	 * ApexTriggers) modified after the given time
+	 * 
+	 * @param modifiedAfter - soql datetime(e.g. 2016-05-12T10:11:12Z)
+	 * 
+	 * @param trigger - true to query the ApexTriggers
+	 * 
+	 * @return - Query to fetch the modified apex classes/triggers as String
+	 */
+	public static String generateQueryToFetchApexClassesModifiedAfter(String modifiedAfter, boolean trigger) {
+		String soql = "SELECT Id , Name FROM " + (trigger ? "ApexTrigger" : "ApexClass")
+				+ " WHERE LastModifiedDate > " + modifiedAfter;
+		return soql;
+	}
+
 	/*
 	 * construct query that fetches Id and Name of the ApexClass for a given
 	 * ApexClassId
@@ -71,6 +121,20 @@ public class QueryConstructor {
 		return soql;
 	}
 
+	/*
+	 * construct queries that fetch Id and Name of the ApexClasses for the
+	 * given ApexClassIds. The Ids are split across as many queries as needed
+	 * to keep each query within MAX_SOQL_LENGTH
+	 * 
+	 * @param apexClassIds - apexClassIds as a collection of String
+	 * 
+	 * @return - Queries to fetch apex classes as a List of String
+	 */
+	public static List<String> generateQueriesToFetchApexClassesFromIds(Collection<String> apexClassIds) {
+		return buildInClauseQueries("SELECT Id, Name FROM ApexClass WHERE Id IN ", apexClassIds, "",
+				MAX_SOQL_LENGTH, false);
+	}
+
 	/*
 	 * construct query that fetches Id and Name of the ApexTrigger for a given
 	 * ApexClassId
@@ -122,56 +186,137 @@ public class QueryConstructor {
 	}
 
 	/*
-	 * construct query that fetches parent job Id for a given ApexTestQueueItem
-	 * Id
+	 * construct queries that fetch Id and Name of the ApexClasses for the given
+	 * ApexClassNames. The names are split across as many queries as needed to
+	 * keep each query within MAX_SOQL_LENGTH
 	 * 
-	 * @param apexTestQueueItemId - Apex trigger name as String
+	 * @param apexClassNames - apex class names as a collection of String
 	 * 
-	 * @return - Query to fetch apex trigger as String
+	 * @return - Queries to fetch apex classes as a List of String
 	 */
-	public static String fetchParentJobIdForApexTestQueueItem(String testQueueItemId) {
-		String soql = "";
-		if (testQueueItemId != null && !testQueueItemId.equals("")) {
-			// we need to limit the number of records we fetch to 1 because
-			// multiple records are returned for each ApexTestClass
-			soql = "select ParentJobId from ApexTestQueueItem where id  = " + escapeSingleQuote(testQueueItemId)
-					+ " limit 1";
-		}
-		return soql;
+	public static List<String> generateQueriesToFetchApexClasses(String namespace, Collection<String> apexClassNames) {
+		return buildInClauseQueries("SELECT Id, Name FROM ApexClass WHERE NamespacePrefix ="
+				+ escapeSingleQuote(namespace) + " AND " + "Name IN ", apexClassNames, "", MAX_SOQL_LENGTH, false);
+	}
+
+	/*
+	 * construct queries that fetch Id and Name of the ApexTriggers for the
+	 * given ApexTriggerNames. The names are split across as many queries as
+	 * needed to keep each query within MAX_SOQL_LENGTH
+	 * 
+	 * @param apexTriggerNames - apex trigger names as a collection of String
+	 * 
+	 * @return - Queries to fetch apex triggers as a List of String
+	 */
+	public static List<String> generateQueriesToFetchApexTriggers(String namespace,
+			Collection<String> apexTriggerNames) {
+		return buildInClauseQueries("SELECT Id, Name FROM ApexTrigger WHERE NamespacePrefix ="
+				+ escapeSingleQuote(namespace) + " AND " + "Name IN ", apexTriggerNames, "", MAX_SOQL_LENGTH, false);
+	}
+
+	/*
+	 * construct queries that fetch parent job Id for the given
+	 * ApexTestQueueItem Ids. The Ids are split across as many queries as
+	 * needed to keep each query within MAX_SOQL_LENGTH
+	 * 
+	 * @param testQueueItemIds - ApexTestQueueItem Ids as a collection of
+	 * String
+	 * 
+	 * @return - Queries to fetch Id and parent job Id of the queue items as a
+	 * List of String
+	 */
+	public static List<String> fetchParentJobIdsForApexTestQueueItems(Collection<String> testQueueItemIds) {
+		return buildInClauseQueries("select Id, ParentJobId from ApexTestQueueItem where Id IN ", testQueueItemIds,
+				"", MAX_SOQL_LENGTH, false);
 	}
 
 	/*
 	 * construct query that fetches the test execution status and related info
-	 * from ApexTestQueueItem table for a given parentJob Id
+	 * from ApexTestQueueItem table for the given parentJob Ids
 	 * 
-	 * @param parentJobId - Parent job ID as String
+	 * @param parentJobIds - Parent job IDs as a collection of String
 	 * 
-	 * @return - Query to fetch test execution status as String
+	 * @return - Queries to fetch test execution status as a List of String
 	 */
-	public static String getTestExecutionStatus(String parentJobId) {
-		String soql = "";
-		if (parentJobId != null && !parentJobId.equals("")) {
-			soql = "Select Id, ApexClassId, ApexClass.Name, ExtendedStatus, ParentJobId, Status, SystemModstamp, CreatedDate "
-					+ "From ApexTestQueueItem Where ParentJobId = "+ escapeSingleQuote(parentJobId);
-		}
-		return soql;
+	public static List<String> getTestExecutionStatus(Collection<String> parentJobIds) {
+		return getTestExecutionStatus(parentJobIds, null);
 	}
 
 	/*
-	 * construct query that fetches the test result and related info from
-	 * ApexTestResult table for a given parentJob Id
+	 * construct query that fetches the test execution status and related info
+	 * of the ApexTestQueueItems modified at or after the given time for the
+	 * given parentJob Ids
 	 * 
-	 * @param parentJobId - Parent job ID as String
+	 * @param parentJobIds - Parent job IDs as a collection of String
+	 * 
+	 * @param modifiedSince - SystemModstamp(as returned by the previous query)
+	 * to filter the queue items on. All queue items are fetched if null
 	 * 
-	 * @return - Query to fetch test result as String
+	 * @return - Queries to fetch test execution status as a List of String.
+	 * The parent jobs are split across as many queries as needed to keep each
+	 * query within MAX_SOQL_LENGTH
 	 */
-	public static String fetchResultFromApexTestQueueItem(String parentJobId) {
-		String soql = "";
-		if (parentJobId != null && !parentJobId.equals("")) {
-			soql = "SELECT ApexClassId,AsyncApexJobId,Id,Message,MethodName,Outcome,QueueItemId,RunTime,StackTrace,SystemModstamp,TestTimestamp "
-					+ "FROM ApexTestResult WHERE AsyncApexJobId = "+ escapeSingleQuote(parentJobId);
+	public static List<String> getTestExecutionStatus(Collection<String> parentJobIds, String modifiedSince) {
+		String querySuffix = "";
+		if (modifiedSince != null && modifiedSince.length() >= 19) {
+			// datetime literals are not quoted in soql. Precision of the
+			// literal is limited to seconds, hence the inclusive
+			// comparison
+			querySuffix += " AND SystemModstamp >= " + modifiedSince.substring(0, 19) + "Z";
 		}
-		return soql;
+		// order the records so that the position of a queue item in the
+		// result remains the same across polls
+		querySuffix += " Order By Id";
+		return buildInClauseQueries(
+				"Select Id, ApexClassId, ApexClass.Name, ExtendedStatus, ParentJobId, Status, SystemModstamp, CreatedDate "
+						+ "From ApexTestQueueItem Where ParentJobId IN ", parentJobIds, querySuffix,
+				MAX_SOQL_LENGTH, false);
+	}
+
+	/*
+	 * construct queries that fetch the progress counters of the given parent
+	 * jobs from the AsyncApexJob table. The parent jobs are split across as
+	 * many queries as needed to keep each query within MAX_SOQL_LENGTH
+	 * 
+	 * @param parentJobIds - Parent job IDs as a collection of String
+	 * 
+	 * @return - Queries to fetch the status of the parent jobs as a List of
+	 * String
+	 */
+	public static List<String> getAsyncApexJobStatus(Collection<String> parentJobIds) {
+		return buildInClauseQueries("SELECT Id, Status, JobItemsProcessed, TotalJobItems FROM AsyncApexJob WHERE Id IN ",
+				parentJobIds, "", MAX_SOQL_LENGTH, false);
+	}
+
+	/*
+	 * construct queries that fetch the test result and related info from
+	 * ApexTestResult table for the given parentJob Ids. The parent jobs are
+	 * split across as many queries as needed to keep each query within
+	 * MAX_SOQL_LENGTH
+	 * 
+	 * @param parentJobIds - Parent job IDs as a collection of String
+	 * 
+	 * @return - Queries to fetch test result as a List of String
+	 */
+	public static List<String> fetchResultFromApexTestQueueItem(Collection<String> parentJobIds) {
+		return buildInClauseQueries(
+				"SELECT ApexClassId,AsyncApexJobId,Id,Message,MethodName,Outcome,QueueItemId,RunTime,StackTrace,SystemModstamp,TestTimestamp "
+						+ "FROM ApexTestResult WHERE AsyncApexJobId IN ", parentJobIds, "", MAX_SOQL_LENGTH, false);
+	}
+
+	/*
+	 * construct queries that fetch the test results from ApexTestResult table
+	 * for the given ApexTestQueueItem Ids. The queue items are split across as
+	 * many queries as needed to keep each query within MAX_SOQL_LENGTH
+	 * 
+	 * @param queueItemIds - ApexTestQueueItem IDs as a collection of String
+	 * 
+	 * @return - Queries to fetch the test results as a List of String
+	 */
+	public static List<String> fetchResultsForApexTestQueueItems(Collection<String> queueItemIds) {
+		return buildInClauseQueries(
+				"SELECT ApexClassId,AsyncApexJobId,Id,Message,MethodName,Outcome,QueueItemId,RunTime,StackTrace,SystemModstamp,TestTimestamp "
+						+ "FROM ApexTestResult WHERE QueueItemId IN ", queueItemIds, "", MAX_SOQL_LENGTH, false);
 	}
 
 	/*
@@ -191,35 +336,53 @@ public class QueryConstructor {
 	}
 
 	/*
-	 * construct query that computes aggregated code coverage metrics for a
-	 * given array of classes
+	 * construct queries that compute aggregated code coverage metrics for a
+	 * given collection of classes. The queries are fired using the Tooling
+	 * API, hence the classes are split across as many queries as needed to
+	 * keep each url encoded query within MAX_URL_ENCODED_SOQL_LENGTH
 	 * 
-	 * @param parentJobId - array of class names as String
+	 * @param apexClassIds - Apex class/trigger ids as a collection of String
 	 * 
-	 * @return - Query to compute aggregated code coverage metrics as String
+	 * @return - Queries to compute aggregated code coverage metrics as a List
+	 * of String
 	 */
-	public static String getAggregatedCodeCoverage(String classArrayForQuery) {
-		String soql = "";
-		if (classArrayForQuery != null && !classArrayForQuery.equals("")) {
-			soql = "select ApexClassorTriggerId,NumLinesCovered,NumLinesUncovered,Coverage FROM "
-					+ "ApexCodeCoverageAggregate WHERE ApexClassOrTriggerId IN (" + classArrayForQuery + ")";
-		}
-		return soql;
+	public static List<String> getAggregatedCodeCoverage(Collection<String> apexClassIds) {
+		return buildInClauseQueries("select ApexClassorTriggerId,NumLinesCovered,NumLinesUncovered,Coverage FROM "
+				+ "ApexCodeCoverageAggregate WHERE ApexClassOrTriggerId IN ", apexClassIds, "",
+				MAX_URL_ENCODED_SOQL_LENGTH, true);
 	}
 
 	/*
-	 * construct query that computes code coverage metrics for a given array of
-	 * classes at each method level (to be used later. not in use currently)
+	 * construct queries that fetch only the covered/uncovered line counts of
+	 * the aggregated code coverage for a given collection of classes. Unlike
+	 * getAggregatedCodeCoverage, the line numbers(Coverage field) are not
+	 * selected, hence the responses are much smaller
 	 * 
-	 * @param parentJobId - array of class names as String
+	 * @param apexClassIds - Apex class/trigger ids as a collection of String
 	 * 
-	 * @return - Query to compute code coverage metrics as String
+	 * @return - Queries to fetch the aggregated code coverage line counts as
+	 * a List of String
 	 */
+	public static List<String> getAggregatedCodeCoverageCounts(Collection<String> apexClassIds) {
+		return buildInClauseQueries("select ApexClassorTriggerId,NumLinesCovered,NumLinesUncovered FROM "
+				+ "ApexCodeCoverageAggregate WHERE ApexClassOrTriggerId IN ", apexClassIds, "",
+				MAX_URL_ENCODED_SOQL_LENGTH, true);
+	}
 
-	public static String getClassLevelCodeCoverage(String classArrayForQuery) {
-		String soql = "select ApexClassOrTriggerId,NumLinesCovered,ApexTestClassId,NumLinesUncovered,TestMethodName FROM "
-				+ "ApexCodeCoverage WHERE ApexClassOrTriggerId IN (" + classArrayForQuery + ")";
-		return soql;
+	/*
+	 * construct queries that compute code coverage metrics for a given
+	 * collection of classes at each test method level, including the
+	 * covered/uncovered lines
+	 * 
+	 * @param apexClassIds - Apex class/trigger ids as a collection of String
+	 * 
+	 * @return - Queries to compute code coverage metrics as a List of String
+	 */
+	public static List<String> getClassLevelCodeCoverage(Collection<String> apexClassIds) {
+		return buildInClauseQueries(
+				"select ApexClassOrTriggerId,NumLinesCovered,ApexTestClassId,NumLinesUncovered,TestMethodName,Coverage FROM "
+						+ "ApexCodeCoverage WHERE ApexClassOrTriggerId IN ", apexClassIds, "",
+				MAX_URL_ENCODED_SOQL_LENGTH, true);
 	}
 
 	/*
@@ -267,6 +430,88 @@ public class QueryConstructor {
 		return soql;
 	}
 
+	/*
+	 * construct queries that fetch class info of the ApexClasses for the given
+	 * ApexClassIds. The Ids are split across as many queries as needed to
+	 * keep each query within MAX_SOQL_LENGTH
+	 * 
+	 * @param apexClassIds - Apex class ids as a collection of String
+	 * 
+	 * @return - Queries to fetch info of apex classes as a List of String
+	 */
+	public static List<String> getApexClassInfo(Collection<String> apexClassIds) {
+		return buildInClauseQueries("SELECT Id,Name,ApiVersion,LengthWithoutComments FROM ApexClass where Id IN ",
+				apexClassIds, "", MAX_SOQL_LENGTH, false);
+	}
+
+	/*
+	 * construct queries that fetch info of the ApexTriggers for the given Apex
+	 * class(trigger) Ids. The Ids are split across as many queries as needed
+	 * to keep each query within MAX_SOQL_LENGTH
+	 * 
+	 * @param apexClassIds - Apex trigger ids as a collection of String
+	 * 
+	 * @return - Queries to fetch info on apex triggers as a List of String
+	 */
+	public static List<String> getApexTriggerInfo(Collection<String> apexClassIds) {
+		return buildInClauseQueries("SELECT Id,Name,ApiVersion,LengthWithoutComments FROM ApexTrigger where Id IN ",
+				apexClassIds, "", MAX_SOQL_LENGTH, false);
+	}
+
+	/*
+	 * construct query that fetches the metadata of the ApexClasses in the org
+	 * that are modified after the given time
+	 * 
+	 * @param modifiedAfter - soql datetime(e.g. 2016-05-12T10:11:12Z); null
+	 * to fetch all the classes
+	 * 
+	 * @return - Query to fetch metadata of apex classes as String
+	 */
+	public static String getApexClassMetadata(String modifiedAfter) {
+		String soql = "SELECT Id,Name,NamespacePrefix,ApiVersion,LengthWithoutComments,LastModifiedDate FROM ApexClass";
+		if (modifiedAfter != null) {
+			soql += " WHERE LastModifiedDate > " + modifiedAfter;
+		}
+		return soql;
+	}
+
+	/*
+	 * construct query that fetches the metadata of the ApexTriggers in the org
+	 * that are modified after the given time
+	 * 
+	 * @param modifiedAfter - soql datetime(e.g. 2016-05-12T10:11:12Z); null
+	 * to fetch all the triggers
+	 * 
+	 * @return - Query to fetch metadata of apex triggers as String
+	 */
+	public static String getApexTriggerMetadata(String modifiedAfter) {
+		String soql = "SELECT Id,Name,NamespacePrefix,ApiVersion,LengthWithoutComments,LastModifiedDate FROM ApexTrigger";
+		if (modifiedAfter != null) {
+			soql += " WHERE LastModifiedDate > " + modifiedAfter;
+		}
+		return soql;
+	}
+
+	/*
+	 * construct query that counts all the ApexClasses in the org
+	 * 
+	 * @return - Query to count the apex classes as String
+	 */
+	public static String getApexClassCount() {
+		String soql = "SELECT COUNT() FROM ApexClass";
+		return soql;
+	}
+
+	/*
+	 * construct query that counts all the ApexTriggers in the org
+	 * 
+	 * @return - Query to count the apex triggers as String
+	 */
+	public static String getApexTriggerCount() {
+		String soql = "SELECT COUNT() FROM ApexTrigger";
+		return soql;
+	}
+
 	/*
 	 * Process regex provided by the user so that the regex can be consumed by
 	 * soql queries * is converted to % in the regex. If no * is found in the
@@ -278,7 +523,7 @@ public class QueryConstructor {
 	 * 
 	 * @return processed regex as a String
 	 */
-	private static String processRegexForSoqlQueries(String apexClassNameRegex) {
+	public static String processRegexForSoqlQueries(String apexClassNameRegex) {
 		if (apexClassNameRegex != null) {
 			String processedRegexForSoqlQueries = apexClassNameRegex.replace('*', '%');
 			// if there are no '*'s in the given regex, convert it to prefix by
@@ -307,21 +552,88 @@ public class QueryConstructor {
 		return singleQuoteEscapedStr;
 	}
 	/*
-	 * Query to check class exists in Apex Test queue 
-	 * @param : userInput: String
+	 * Queries to check whether the given classes are queued or being processed
+	 * in the Apex test queue. The classes are split across as many queries as
+	 * needed to keep each query within MAX_SOQL_LENGTH
 	 * 
-	 * @return : singleQuotrEscapedStr : String
-	 *
+	 * @param apexClassIds - Apex class ids as a collection of String
+	 * 
+	 * @return - Queries to fetch the queued test queue items as a List of
+	 * String
+	 */
+	public static List<String> getQueryForApexClassInfo(Collection<String> apexClassIds) {
+		return buildInClauseQueries("SELECT Id FROM ApexTestQueueItem WHERE  ApexClassId IN ", apexClassIds,
+				" AND status IN ('Queued', 'Processing')", MAX_SOQL_LENGTH, false);
+	}
+
+	/*
+	 * Builds the queries of the form queryPrefix + (values) + querySuffix for
+	 * the given values. The values are split across as many queries as needed
+	 * so that no query exceeds maxQueryLength. Each query is independent of
+	 * the others, so the caller is free to fire them in parallel
+	 * 
+	 * @param queryPrefix - the query up to and including the IN keyword
+	 * 
+	 * @param values - values(Ids, names) for the IN clause
+	 * 
+	 * @param querySuffix - rest of the query following the IN clause
+	 * 
+	 * @param maxQueryLength - maximum length of each query
+	 * 
+	 * @param urlEncoded - true if the length of the query is to be measured
+	 * after url encoding, i.e. for the queries fired as part of the URL
+	 * 
+	 * @return queries as a List of String; empty if there are no values
 	 */
-	
-	public static String getQueryForApexClassInfo(String apexClassess){
-		String sql ="";
-		if(apexClassess !=null){
-			sql = "SELECT Id FROM ApexTestQueueItem WHERE  ApexClassId IN "+ "("+apexClassess+") AND status IN ('Queued', 'Processing')";
+	public static List<String> buildInClauseQueries(String queryPrefix, Collection<String> values,
+			String querySuffix, int maxQueryLength, boolean urlEncoded) {
+		List<String> queries = new ArrayList<String>();
+		if (values == null || values.isEmpty()) {
+			return queries;
+		}
+		// length of the query without any values in the IN clause
+		int fixedLength = measureLength(queryPrefix + "()" + querySuffix, urlEncoded);
+		int separatorLength = measureLength(",", urlEncoded);
+		// reused for all the queries
+		StringBuilder query = new StringBuilder(Math.min(maxQueryLength, 4096));
+		int queryLength = 0;
+		int valuesInQuery = 0;
+		for (String value : values) {
+			String quotedValue = escapeSingleQuote(value);
+			int valueLength = measureLength(quotedValue, urlEncoded);
+			if (valuesInQuery > 0 && queryLength + separatorLength + valueLength > maxQueryLength) {
+				queries.add(query.append(')').append(querySuffix).toString());
+				valuesInQuery = 0;
+			}
+			if (valuesInQuery == 0) {
+				query.setLength(0);
+				query.append(queryPrefix).append('(');
+				queryLength = fixedLength;
+			} else {
+				query.append(',');
+				queryLength += separatorLength;
+			}
+			query.append(quotedValue);
+			queryLength += valueLength;
+			valuesInQuery++;
+		}
+		queries.add(query.append(')').append(querySuffix).toString());
+		logger.debug("Built " + queries.size() + " queries for " + values.size() + " values of the IN clause");
+		return queries;
+	}
+
+	/*
+	 * @return length of the given part of a query as it is sent to the org
+	 */
+	private static int measureLength(String queryPart, boolean urlEncoded) {
+		if (!urlEncoded) {
+			return queryPart.length();
+		}
+		try {
+			return URLEncoder.encode(queryPart, "UTF-8").length();
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is supported by every JVM; assume the worst case
+			return queryPart.length() * 9;
 		}
-		return sql;
 	}
-	
-	
-	
 }
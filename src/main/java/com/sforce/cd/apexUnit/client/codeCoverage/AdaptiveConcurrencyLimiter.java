@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Limits the number of web service calls fired at the org at the same time
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * AdaptiveConcurrencyLimiter adjusts the number of calls allowed in flight using
+ * AIMD(additive increase, multiplicative decrease):
+ * - every successful call with a latency in line with the recent calls
+ * increases the limit by 1/limit, i.e. by about one per round of calls
+ * - a call rejected by the org as overloaded(429/503/REQUEST_LIMIT_EXCEEDED)
+ * or a latency spike halves the limit
+ * The limit stays within [minLimit, maxLimit]
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	private static Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+	// a call is considered a latency spike if it takes longer than this factor
+	// times the smoothed latency of the recent calls
+	private static final double LATENCY_SPIKE_FACTOR = 2.0;
+	// weight of the latest call in the smoothed latency
+	private static final double LATENCY_SMOOTHING_FACTOR = 0.2;
+	private static final double BACKOFF_RATIO = 0.5;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private double limit;
+	private int inFlight = 0;
+	private double smoothedLatencyInMillis = -1;
+
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	/*
+	 * Blocks till a call can be fired without exceeding the current limit
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (inFlight >= getLimit()) {
+			wait();
+		}
+		inFlight++;
+	}
+
+	/*
+	 * Releases the slot of a successful call and adjusts the limit based on
+	 * its latency
+	 *
+	 * @param latencyInMillis - time taken by the call
+	 */
+	public synchronized void onSuccess(long latencyInMillis) {
+		release();
+		if (smoothedLatencyInMillis > 0 && latencyInMillis > smoothedLatencyInMillis * LATENCY_SPIKE_FACTOR) {
+			backOff("latency spike: " + latencyInMillis + " ms against " + (long) smoothedLatencyInMillis
+					+ " ms for the recent calls");
+		} else {
+			limit = Math.min(maxLimit, limit + 1.0 / limit);
+		}
+		smoothedLatencyInMillis = smoothedLatencyInMillis < 0 ? latencyInMillis
+				: (1 - LATENCY_SMOOTHING_FACTOR) * smoothedLatencyInMillis + LATENCY_SMOOTHING_FACTOR
+						* latencyInMillis;
+	}
+
+	/*
+	 * Releases the slot of a failed call. The limit is halved if the org
+	 * rejected the call as overloaded
+	 *
+	 * @param overload - true if the org rejected the call as overloaded
+	 */
+	public synchronized void onFailure(boolean overload) {
+		release();
+		if (overload) {
+			backOff("the org is overloaded");
+		}
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	private void release() {
+		inFlight--;
+		notifyAll();
+	}
+
+	private void backOff(String reason) {
+		int previousLimit = (int) limit;
+		limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+		if ((int) limit != previousLimit) {
+			LOG.info("Reducing the number of parallel requests from " + previousLimit + " to " + (int) limit
+					+ " due to " + reason);
+		} else {
+			// already at the minimum; sustained overload would flood the log
+			LOG.debug("Number of parallel requests remains at the minimum of " + previousLimit + "(" + reason + ")");
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Streaming decoder for the ApexCodeCoverageAggregate records returned by the Tooling API
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sforce.cd.apexUnit.report.ApexClassCodeCoverageBean;
+import com.sforce.cd.apexUnit.report.LineCoverage;
+
+/*
+ * Decodes each ApexCodeCoverageAggregate record straight into a code coverage
+ * bean. The covered/uncovered line numbers of the Coverage field are read
+ * into int arrays and kept as a LineCoverage
+ */
+public class ApexCodeCoverageAggregateDecoder extends ToolingQueryPageDecoder<ApexClassCodeCoverageBean> {
+
+	@Override
+	protected ApexClassCodeCoverageBean decodeRecord(JsonReader jsonReader) throws IOException {
+		ApexClassCodeCoverageBean apexClassCodeCoverageBean = new ApexClassCodeCoverageBean();
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			String name = jsonReader.nextName();
+			if (jsonReader.peek() == JsonToken.NULL) {
+				jsonReader.nextNull();
+			} else if (name.equals("ApexClassOrTriggerId")) {
+				apexClassCodeCoverageBean.setApexClassorTriggerId(jsonReader.nextString());
+			} else if (name.equals("NumLinesCovered")) {
+				apexClassCodeCoverageBean.setNumLinesCovered(jsonReader.nextInt());
+			} else if (name.equals("NumLinesUncovered")) {
+				apexClassCodeCoverageBean.setNumLinesUncovered(jsonReader.nextInt());
+			} else if (name.equals("Coverage")) {
+				LineCoverage lineCoverage = readLineCoverage(jsonReader);
+				if (lineCoverage != null) {
+					apexClassCodeCoverageBean.setLineCoverage(lineCoverage);
+				}
+			} else {
+				// attributes of the record
+				jsonReader.skipValue();
+			}
+		}
+		jsonReader.endObject();
+		if (apexClassCodeCoverageBean.getApexClassorTriggerId() == null) {
+			return null;
+		}
+		return apexClassCodeCoverageBean;
+	}
+}
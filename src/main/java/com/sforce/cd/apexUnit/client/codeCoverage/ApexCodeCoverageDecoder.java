@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Streaming decoder for the ApexCodeCoverage records returned by the Tooling API
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sforce.cd.apexUnit.report.ApexMethodCodeCoverageBean;
+import com.sforce.cd.apexUnit.report.LineCoverage;
+
+/*
+ * Decodes each ApexCodeCoverage record(coverage of a class/trigger by a
+ * single test method) straight into a method code coverage bean
+ */
+public class ApexCodeCoverageDecoder extends ToolingQueryPageDecoder<ApexMethodCodeCoverageBean> {
+
+	@Override
+	protected ApexMethodCodeCoverageBean decodeRecord(JsonReader jsonReader) throws IOException {
+		ApexMethodCodeCoverageBean apexMethodCodeCoverageBean = new ApexMethodCodeCoverageBean();
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			String name = jsonReader.nextName();
+			if (jsonReader.peek() == JsonToken.NULL) {
+				jsonReader.nextNull();
+			} else if (name.equals("ApexClassOrTriggerId")) {
+				apexMethodCodeCoverageBean.setApexClassorTriggerId(jsonReader.nextString());
+			} else if (name.equals("ApexTestClassId")) {
+				apexMethodCodeCoverageBean.setApexTestClassID(jsonReader.nextString());
+			} else if (name.equals("TestMethodName")) {
+				apexMethodCodeCoverageBean.setTestMethodName(jsonReader.nextString());
+			} else if (name.equals("NumLinesCovered")) {
+				apexMethodCodeCoverageBean.setCoveredLines(jsonReader.nextInt());
+			} else if (name.equals("NumLinesUncovered")) {
+				apexMethodCodeCoverageBean.setUnCoveredLines(jsonReader.nextInt());
+			} else if (name.equals("Coverage")) {
+				LineCoverage lineCoverage = readLineCoverage(jsonReader);
+				if (lineCoverage != null) {
+					apexMethodCodeCoverageBean.setLineCoverage(lineCoverage);
+				}
+			} else {
+				// attributes of the record
+				jsonReader.skipValue();
+			}
+		}
+		jsonReader.endObject();
+		if (apexMethodCodeCoverageBean.getApexClassorTriggerId() == null
+				|| apexMethodCodeCoverageBean.getApexTestClassID() == null) {
+			return null;
+		}
+		return apexMethodCodeCoverageBean;
+	}
+}
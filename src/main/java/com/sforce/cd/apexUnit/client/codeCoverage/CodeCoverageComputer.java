@@ -13,12 +13,15 @@
 
 package com.sforce.cd.apexUnit.client.codeCoverage;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
@@ -37,6 +40,7 @@ import com.sforce.cd.apexUnit.client.QueryConstructor;
 import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
 import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
 import com.sforce.cd.apexUnit.report.ApexClassCodeCoverageBean;
+import com.sforce.cd.apexUnit.report.ApexMethodCodeCoverageBean;
 import com.sforce.cd.apexUnit.report.ApexUnitCodeCoverageResults;
 import com.sforce.soap.partner.PartnerConnection;
 
@@ -46,7 +50,11 @@ public class CodeCoverageComputer {
 	String propFileName = "config.properties";
 	InputStream inputStream = getClass().getClassLoader().getResourceAsStream(propFileName);
 	private String SUPPORTED_VERSION = System.getProperty("API_VERSION");
-	private final int BATCH_SIZE = 100;
+	// number of code coverage requests fired in parallel. The actual number
+	// is adjusted between 1 and MAX_PARALLEL_COVERAGE_REQUESTS based on how
+	// the org copes with the load(see AdaptiveConcurrencyLimiter)
+	private static final int INITIAL_PARALLEL_COVERAGE_REQUESTS = 5;
+	public static final int MAX_PARALLEL_COVERAGE_REQUESTS = 16;
 
 	/*
 	 * Constructor for CodeCoverageComputer Initialize SUPPORTED_VERSION
@@ -98,91 +106,37 @@ public class CodeCoverageComputer {
 		if (CommandLineArguments.getSourceRegex() != null) {
 			LOG.debug(" Fetching apex classes with regex : " + CommandLineArguments.getSourceRegex());
 			classesAsArray = ApexClassFetcherUtils.fetchApexClassesBasedOnMultipleRegexes(connection, classesAsArray,
-					CommandLineArguments.getSourceRegex(),true);
+					CommandLineArguments.getSourceRegex(), CommandLineArguments.getSourceExcludeRegex(), true);
 		}
 		// Do not proceed if no class names are returned from both manifest
 		// files and/or regexes
 		if (classesAsArray != null && classesAsArray.length > 0) {
 
-			if (classesAsArray.length > BATCH_SIZE) {
-				// Creating multiple threads for sending request if URL is huge.
-
-				ExecutorService threadPool = Executors.newFixedThreadPool(5);
-				CompletionService<JSONObject> pool = new ExecutorCompletionService<JSONObject>(threadPool);
-
-				int numOfBatches = 1;
-				int fromIndex = 0;
-				int toIndex = BATCH_SIZE;
-				JSONArray recordObject = new JSONArray();
-				JSONObject responseJsonObject = null;
-				LOG.info("Total number of classes: " + classesAsArray.length);
-
-				if (classesAsArray.length % BATCH_SIZE == 0) {
-					numOfBatches = classesAsArray.length / BATCH_SIZE;
-				} else {
-					numOfBatches = classesAsArray.length / BATCH_SIZE + 1;
-				}
-
-				for (int count = 0; count < numOfBatches; count++) {
-					String[] ClassesInBatch = Arrays.copyOfRange(classesAsArray, fromIndex, toIndex);
-					String classArrayAsStringForQuery = processClassArrayForQuery(ClassesInBatch);
-					LOG.debug("Classes i nthis query: " + classArrayAsStringForQuery);
-					LOG.info("Total number of classes in this query: " + ClassesInBatch.length);
-					String relativeServiceURL = "/services/data/v" + SUPPORTED_VERSION + "/tooling";
-					// compute aggregated code coverage
-					String soqlcc = QueryConstructor.getAggregatedCodeCoverage(classArrayAsStringForQuery);
-					pool.submit(new CodeCoverageTask(relativeServiceURL, soqlcc, OAuthTokenGenerator.getOrgToken()));
-
-					if (toIndex == classesAsArray.length) {
-						break;
-					} else {
-						fromIndex = fromIndex + BATCH_SIZE;
-						if ((toIndex + BATCH_SIZE) < (classesAsArray.length)) {
-							toIndex = toIndex + BATCH_SIZE;
-						} else {
-							toIndex = classesAsArray.length;
-						}
-					}
-
-				}
-
-				for (int i = 0; i < numOfBatches; i++) {
-					try {
-						recordObject.addAll((JSONArray) pool.take().get().get("records"));
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					} catch (ExecutionException e) {
-						e.printStackTrace();
-					}
-
-				}
-
-				threadPool.shutdown();
-
-				if (recordObject.size() > 0) {
-					apexClassCodeCoverageBeans = processJSONResponseAndConstructCodeCoverageBeans(connection,
-							recordObject);
-				}
-
+			LOG.info("Total number of classes: " + classesAsArray.length);
+			String relativeServiceURL = "/services/data/v" + SUPPORTED_VERSION + "/tooling";
+			String coverageLineDetails = CommandLineArguments.getCoverageLineDetails();
+			// compute aggregated code coverage. The classes are split across
+			// as many queries as needed to keep the request URLs within limits.
+			// The line numbers are fetched along with the line counts only
+			// if they are needed for all the classes
+			List<String> codeCoverageQueries = null;
+			if (coverageLineDetails == null
+					|| CommandLineArguments.COVERAGE_LINE_DETAILS_ALL.equalsIgnoreCase(coverageLineDetails)) {
+				codeCoverageQueries = QueryConstructor.getAggregatedCodeCoverage(Arrays.asList(classesAsArray));
 			} else {
-				String classArrayAsStringForQuery = processClassArrayForQuery(classesAsArray);
-				String relativeServiceURL = "/services/data/v" + SUPPORTED_VERSION + "/tooling";
-				// compute aggregated code coverage
-				String soqlcc = QueryConstructor.getAggregatedCodeCoverage(classArrayAsStringForQuery);
+				codeCoverageQueries = QueryConstructor.getAggregatedCodeCoverageCounts(Arrays.asList(classesAsArray));
+			}
+			List<ApexClassCodeCoverageBean> codeCoverageRecords = fetchCodeCoverageRecords(relativeServiceURL,
+					codeCoverageQueries, new ApexCodeCoverageAggregateDecoder());
+			if (CommandLineArguments.COVERAGE_LINE_DETAILS_BELOW_THRESHOLD.equalsIgnoreCase(coverageLineDetails)) {
+				fetchLineCoverageForClassesBelowThreshold(relativeServiceURL, codeCoverageRecords);
+			}
 
-				JSONObject responseJsonObject = null;
-				responseJsonObject = WebServiceInvoker.doGet(relativeServiceURL, soqlcc,
-						OAuthTokenGenerator.getOrgToken());
-				LOG.debug("responseJsonObject says " + responseJsonObject + "\n relativeServiceURL is "
-						+ relativeServiceURL + "\n soqlcc is " + soqlcc);
-				if (responseJsonObject != null) {
-					apexClassCodeCoverageBeans = processJSONResponseAndConstructCodeCoverageBeans(connection,
-							(JSONArray) responseJsonObject.get("records"));
-				}
-				if (apexClassCodeCoverageBeans == null) {
-					ApexUnitUtils.shutDownWithErrMsg(
-							"Code coverage metrics not computed. Null object returned while processing the JSON response from the Tooling API");
-				}
+			apexClassCodeCoverageBeans = processCodeCoverageRecordsAndConstructCodeCoverageBeans(connection,
+					codeCoverageRecords);
+			if (apexClassCodeCoverageBeans == null) {
+				ApexUnitUtils.shutDownWithErrMsg(
+						"Code coverage metrics not computed. Null object returned while processing the JSON response from the Tooling API");
 			}
 		} else {
 			ApexUnitUtils.shutDownWithErrMsg("No/Invalid Apex source classes mentioned in manifest file and/or "
@@ -192,110 +146,144 @@ public class CodeCoverageComputer {
 	}
 
 	/*
-	 * convert string array into csv string to facilitate the querying
+	 * Fires the given code coverage queries in parallel using the Tooling API
+	 * 
+	 * @param relativeServiceURL - relative URL of the Tooling API
+	 * 
+	 * @param codeCoverageQueries - queries on ApexCodeCoverageAggregate or
+	 * ApexCodeCoverage
+	 * 
+	 * @param decoder - decoder for the records returned by the queries
+	 * 
+	 * @return code coverage records decoded from the responses of all the
+	 * queries
+	 */
+	private <T> List<T> fetchCodeCoverageRecords(String relativeServiceURL, List<String> codeCoverageQueries,
+			ToolingQueryPageDecoder<T> decoder) {
+		List<T> codeCoverageRecords = new ArrayList<T>();
+		if (codeCoverageQueries.isEmpty()) {
+			return codeCoverageRecords;
+		}
+		LOG.debug("Computing code coverage using " + codeCoverageQueries.size() + " queries");
+
+		AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+				INITIAL_PARALLEL_COVERAGE_REQUESTS, 1, MAX_PARALLEL_COVERAGE_REQUESTS);
+		ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_COVERAGE_REQUESTS,
+				codeCoverageQueries.size()));
+		CompletionService<List<T>> pool = new ExecutorCompletionService<List<T>>(threadPool);
+
+		for (String soqlcc : codeCoverageQueries) {
+			LOG.debug("relativeServiceURL is " + relativeServiceURL + "\n soqlcc is " + soqlcc);
+			pool.submit(new CodeCoverageTask<T>(relativeServiceURL, soqlcc, OAuthTokenGenerator.getOrgToken(),
+					decoder, concurrencyLimiter));
+		}
+
+		try {
+			for (int i = 0; i < codeCoverageQueries.size(); i++) {
+				codeCoverageRecords.addAll(pool.take().get());
+			}
+		} catch (InterruptedException e) {
+			ApexUnitUtils.shutDownWithDebugLog(e, "Interrupted while computing code coverage: " + e.getMessage());
+		} catch (ExecutionException e) {
+			// a page of the query failed even after retries; the code coverage
+			// would be incomplete without its records
+			ApexUnitUtils.shutDownWithDebugLog(e,
+					"Error encountered while computing code coverage: " + e.getCause().getMessage());
+		} finally {
+			threadPool.shutdownNow();
+		}
+		LOG.debug("Parallel code coverage requests at the end of the computation: " + concurrencyLimiter.getLimit());
+		LOG.debug("HTTP connection pool after computing code coverage: " + WebServiceInvoker.getConnectionPoolStats());
+		return codeCoverageRecords;
+	}
+
+	/*
+	 * Second phase of the code coverage computation when the line numbers are
+	 * needed only for the classes below the team code coverage threshold. The
+	 * line numbers(Coverage field) of such classes are fetched and attached
+	 * to their code coverage records fetched with the line counts
 	 * 
-	 * @param: class names as string array
+	 * @param relativeServiceURL - relative URL of the Tooling API
 	 * 
-	 * @return csv class names as string
+	 * @param codeCoverageRecords - code coverage records with the line counts
 	 */
-	private String processClassArrayForQuery(String[] classesAsArray) {
-		String queryString = "";
-		for (int i = 0; i < classesAsArray.length; i++) {
-			queryString += "'" + classesAsArray[i] + "'";
-			queryString += ",";
+	private void fetchLineCoverageForClassesBelowThreshold(String relativeServiceURL,
+			List<ApexClassCodeCoverageBean> codeCoverageRecords) {
+		Map<String, ApexClassCodeCoverageBean> recordsBelowThreshold = new HashMap<String, ApexClassCodeCoverageBean>();
+		for (ApexClassCodeCoverageBean apexClassCodeCoverageBean : codeCoverageRecords) {
+			if (apexClassCodeCoverageBean.getCoveragePercentage() < CommandLineArguments
+					.getTeamCodeCoverageThreshold()) {
+				recordsBelowThreshold.put(apexClassCodeCoverageBean.getApexClassorTriggerId(),
+						apexClassCodeCoverageBean);
+			}
 		}
-		if (queryString.length() > 1) {
-			queryString = queryString.substring(0, queryString.length() - 1);
+		LOG.info("Fetching the covered/uncovered lines of " + recordsBelowThreshold.size() + " out of "
+				+ codeCoverageRecords.size() + " classes below the team code coverage threshold");
+		List<ApexClassCodeCoverageBean> lineCoverageRecords = fetchCodeCoverageRecords(relativeServiceURL,
+				QueryConstructor.getAggregatedCodeCoverage(recordsBelowThreshold.keySet()),
+				new ApexCodeCoverageAggregateDecoder());
+		for (ApexClassCodeCoverageBean lineCoverageRecord : lineCoverageRecords) {
+			ApexClassCodeCoverageBean apexClassCodeCoverageBean = recordsBelowThreshold.get(lineCoverageRecord
+					.getApexClassorTriggerId());
+			if (apexClassCodeCoverageBean != null) {
+				apexClassCodeCoverageBean.setLineCoverage(lineCoverageRecord.getLineCoverage());
+			}
 		}
-		return queryString;
 	}
 
 	/*
-	 * Derive an array of code coverage beans from processing the JSON response
-	 * of Tooling API call
+	 * Derive an array of code coverage beans from the code coverage records
+	 * decoded from the Tooling API response
 	 * 
 	 * @param connection = partner connection
 	 * 
-	 * @param responseJsonObject - json response object that needs to be
+	 * @param codeCoverageRecords - code coverage records that need to be
 	 * processed
 	 * 
 	 * @return code coverage result(beans) as array
 	 */
-	private ApexClassCodeCoverageBean[] processJSONResponseAndConstructCodeCoverageBeans(PartnerConnection connection,
-			JSONArray aggregateRecordObject) {
+	private ApexClassCodeCoverageBean[] processCodeCoverageRecordsAndConstructCodeCoverageBeans(
+			PartnerConnection connection, List<ApexClassCodeCoverageBean> codeCoverageRecords) {
 		int classCounter = 0;
 		int coveredLinesForTheTeam = 0;
 		int unCoveredLinesForTheTeam = 0;
-		JSONArray recordObject = aggregateRecordObject;
-		if (recordObject != null && recordObject.size() > 0) {
-			ApexClassCodeCoverageBean[] apexClassCodeCoverageBeans = new ApexClassCodeCoverageBean[recordObject.size()];
-			for (int i = 0; i < recordObject.size(); ++i) {
-
-				ApexClassCodeCoverageBean apexClassCodeCoverageBean = new ApexClassCodeCoverageBean();
-				// The object below is one record from the ApexCodeCoverage
-				// object
-				JSONObject rec = (JSONObject) recordObject.get(i);
-
+		if (codeCoverageRecords != null && codeCoverageRecords.size() > 0) {
+			// fetch the info of all the classes/triggers upfront instead of
+			// querying the org for each record
+			List<String> apexClassOrTriggerIds = new ArrayList<String>();
+			for (ApexClassCodeCoverageBean apexClassCodeCoverageBean : codeCoverageRecords) {
+				apexClassOrTriggerIds.add(apexClassCodeCoverageBean.getApexClassorTriggerId());
+			}
+			Map<String, HashMap<String, String>> apexClassInfoMaps = ApexClassFetcherUtils
+					.fetchApexClassInfoFromIds(connection, apexClassOrTriggerIds);
+			ApexClassCodeCoverageBean[] apexClassCodeCoverageBeans = new ApexClassCodeCoverageBean[codeCoverageRecords
+					.size()];
+			for (ApexClassCodeCoverageBean apexClassCodeCoverageBean : codeCoverageRecords) {
 				// ApexClassOrTriggerId - The ID of the class or trigger under
 				// test.
-				String apexClassOrTriggerId = (String) rec.get("ApexClassOrTriggerId").toString();
-				if (apexClassOrTriggerId != null) {
-					int coveredLines = 0;
-					if (rec.get("NumLinesCovered") != null) {
-						coveredLines = Integer.valueOf((String) rec.get("NumLinesCovered").toString());
-						coveredLinesForTheTeam += coveredLines;
-					} else {
-						LOG.debug(apexClassOrTriggerId + " has NumLinesCovered as NULL !!!!!!!!!");
-					}
-					int unCoveredLines = 0;
-					if (rec.get("NumLinesUncovered") != null) {
-						unCoveredLines = Integer.valueOf((String) rec.get("NumLinesUncovered").toString());
-						unCoveredLinesForTheTeam += unCoveredLines;
-					} else {
-						LOG.debug(apexClassOrTriggerId + " has NumLinesUncovered as NULL !!!!!!!!!");
-					}
-					if (rec.get("Coverage") != null) {
-						JSONObject codeCoverageLineLists = (JSONObject) rec.get("Coverage");
-						JSONArray coveredLinesJsonArray = (JSONArray) codeCoverageLineLists.get("coveredLines");
-						JSONArray uncoveredLinesJsonArray = (JSONArray) codeCoverageLineLists.get("uncoveredLines");
-						List<Long> coveredLinesList = new ArrayList<Long>();
-						for (int j = 0; j < coveredLinesJsonArray.size(); j++) {
-							coveredLinesList.add((Long) coveredLinesJsonArray.get(j));
-							LOG.debug("covered " + (Long) coveredLinesJsonArray.get(j));
-						}
-						if (coveredLinesList != null && coveredLinesList.size() > 0) {
-							apexClassCodeCoverageBean.setCoveredLinesList(coveredLinesList);
-						}
-
-						List<Long> uncoveredLinesList = new ArrayList<Long>();
-						for (int k = 0; k < uncoveredLinesJsonArray.size(); k++) {
-							uncoveredLinesList.add((Long) uncoveredLinesJsonArray.get(k));
-							LOG.debug("uncovered " + (Long) uncoveredLinesJsonArray.get(k));
-						}
-						if (uncoveredLinesList != null && uncoveredLinesList.size() > 0) {
-							apexClassCodeCoverageBean.setUncoveredLinesList(uncoveredLinesList);
-						}
-					}
-
-					apexClassCodeCoverageBean.setNumLinesCovered(coveredLines);
-					apexClassCodeCoverageBean.setNumLinesUncovered(unCoveredLines);
-					apexClassCodeCoverageBean.setApexClassorTriggerId(apexClassOrTriggerId);
-					HashMap<String, String> apexClassInfoMap = ApexClassFetcherUtils
-							.fetchApexClassInfoFromId(connection, apexClassOrTriggerId);
-					String apexClassName = apexClassInfoMap.get("Name");
-					String apiVersion = apexClassInfoMap.get("ApiVersion");
-					String lengthWithoutComments = apexClassInfoMap.get("LengthWithoutComments");
-					apexClassCodeCoverageBean.setApexClassName(apexClassName);
-					apexClassCodeCoverageBean.setApiVersion(apiVersion);
-					apexClassCodeCoverageBean.setLengthWithoutComments(lengthWithoutComments);
-					apexClassCodeCoverageBeans[classCounter++] = apexClassCodeCoverageBean;
-
-					LOG.info("Record number # " + classCounter + " : coveredLines : " + coveredLines
-							+ " : unCoveredLines : " + unCoveredLines + " : code coverage % : "
-							+ apexClassCodeCoverageBean.getCoveragePercentage() + " : apexClassOrTriggerId : "
-							+ apexClassOrTriggerId + " : apexClassName : " + apexClassName + " : apiVersion : "
-							+ apiVersion + " : lengthWithoutComments : " + lengthWithoutComments);
+				String apexClassOrTriggerId = apexClassCodeCoverageBean.getApexClassorTriggerId();
+				int coveredLines = apexClassCodeCoverageBean.getNumLinesCovered();
+				coveredLinesForTheTeam += coveredLines;
+				int unCoveredLines = apexClassCodeCoverageBean.getNumLinesUncovered();
+				unCoveredLinesForTheTeam += unCoveredLines;
+
+				HashMap<String, String> apexClassInfoMap = apexClassInfoMaps.get(apexClassOrTriggerId);
+				if (apexClassInfoMap == null) {
+					apexClassInfoMap = new HashMap<String, String>();
 				}
+				String apexClassName = apexClassInfoMap.get("Name");
+				String apiVersion = apexClassInfoMap.get("ApiVersion");
+				String lengthWithoutComments = apexClassInfoMap.get("LengthWithoutComments");
+				apexClassCodeCoverageBean.setApexClassName(apexClassName);
+				apexClassCodeCoverageBean.setApiVersion(apiVersion);
+				apexClassCodeCoverageBean.setLengthWithoutComments(lengthWithoutComments);
+				apexClassCodeCoverageBeans[classCounter++] = apexClassCodeCoverageBean;
+
+				LOG.info("Record number # " + classCounter + " : coveredLines : " + coveredLines
+						+ " : unCoveredLines : " + unCoveredLines + " : code coverage % : "
+						+ apexClassCodeCoverageBean.getCoveragePercentage() + " : apexClassOrTriggerId : "
+						+ apexClassOrTriggerId + " : apexClassName : " + apexClassName + " : apiVersion : "
+						+ apiVersion + " : lengthWithoutComments : " + lengthWithoutComments);
 			}
 			double totalLines = coveredLinesForTheTeam + unCoveredLinesForTheTeam;
 			if (totalLines > 0.0) {
@@ -311,52 +299,88 @@ public class CodeCoverageComputer {
 			LOG.info("Team code coverage is : " + ApexUnitCodeCoverageResults.teamCodeCoverage + "%");
 			return apexClassCodeCoverageBeans;
 		} else {
-			// no code coverage record object found in the response. return null
+			// no code coverage record found in the response. return null
 			return null;
 		}
 	}
 
 	/**
-	 * This method is not used currently Calculate code coverage results for the
-	 * Apex classes using Tooling API's This method is intended to provide code
-	 * coverage at method level for each class . This indicates which exact
-	 * method needs more coverage
+	 * Fetch the code coverage of the given classes by each test method(from
+	 * ApexCodeCoverage) using Tooling API's. The queries are fired in
+	 * parallel and all the pages of their results are fetched
+	 * 
+	 * @param apexClassIds - Apex class/trigger ids as a collection of String
 	 * 
-	 * @return
+	 * @return code coverage of the classes by each test method including the
+	 * covered/uncovered lines
 	 */
-	public void calculateCodeCoverageUsingToolingAPI(String classArrayAsStringForQuery) {
-		int classCounter = 0;
+	public List<ApexMethodCodeCoverageBean> calculateCodeCoverageUsingToolingAPI(Collection<String> apexClassIds) {
 		String relativeServiceURL = "/services/data/v" + SUPPORTED_VERSION + "/tooling";
-		String soqlcc = QueryConstructor.getClassLevelCodeCoverage(classArrayAsStringForQuery);
-		LOG.debug("OAuthTokenGenerator.getOrgToken() : " + OAuthTokenGenerator.getOrgToken());
-		JSONObject responseJsonObject = null;
-		responseJsonObject = WebServiceInvoker.doGet(relativeServiceURL, soqlcc, OAuthTokenGenerator.getOrgToken());
-
-		if (responseJsonObject != null) {
-			String responseStr = responseJsonObject.toJSONString();
-			LOG.debug(responseStr);
-			JSONArray recordObject = (JSONArray) responseJsonObject.get("records");
-			for (int i = 0; i < recordObject.size(); ++i) {
-				classCounter++;
-				// The object below is one record from the ApexCodeCoverage
-				// object
-				JSONObject rec = (JSONObject) recordObject.get(i);
-
-				int coveredLines = Integer.valueOf((String) rec.get("NumLinesCovered").toString());
-				int unCoveredLines = Integer.valueOf((String) rec.get("NumLinesUncovered").toString());
-				// ApexTestClassId - The ID of the test class.
-				String apexTestClassID = (String) rec.get("ApexTestClassId").toString();
-				// ApexClassOrTriggerId - The ID of the class or trigger under
-				// test.
-				String apexClassorTriggerId = (String) rec.get("ApexClassOrTriggerId").toString();
-				String testMethodName = (String) rec.get("TestMethodName").toString();
-				LOG.info("Record number # " + classCounter + " : coveredLines : " + coveredLines
-						+ " : unCoveredLines : " + unCoveredLines + " : apexTestClassID : " + apexTestClassID
-						+ " : apexClassorTriggerId : " + apexClassorTriggerId + " : testMethodName : "
-						+ testMethodName);
+		List<ApexMethodCodeCoverageBean> methodCodeCoverageRecords = fetchCodeCoverageRecords(relativeServiceURL,
+				QueryConstructor.getClassLevelCodeCoverage(apexClassIds), new ApexCodeCoverageDecoder());
+		LOG.info("Fetched " + methodCodeCoverageRecords.size() + " test method level code coverage records for "
+				+ apexClassIds.size() + " classes");
+		return methodCodeCoverageRecords;
+	}
 
+	/*
+	 * Fetch the code coverage of the classes of the given code coverage beans
+	 * by each test method and attach the test methods covering each class to
+	 * its code coverage bean
+	 * 
+	 * @param apexClassCodeCoverageBeans - code coverage beans of the classes
+	 * 
+	 * @return code coverage of the classes by each test method including the
+	 * covered/uncovered lines
+	 */
+	public List<ApexMethodCodeCoverageBean> calculateTestMethodCodeCoverage(
+			ApexClassCodeCoverageBean[] apexClassCodeCoverageBeans) {
+		Map<String, ApexClassCodeCoverageBean> apexClassCodeCoverageBeanMap = new HashMap<String, ApexClassCodeCoverageBean>();
+		for (ApexClassCodeCoverageBean apexClassCodeCoverageBean : apexClassCodeCoverageBeans) {
+			apexClassCodeCoverageBeanMap.put(apexClassCodeCoverageBean.getApexClassorTriggerId(),
+					apexClassCodeCoverageBean);
+		}
+		List<ApexMethodCodeCoverageBean> methodCodeCoverageRecords = calculateCodeCoverageUsingToolingAPI(apexClassCodeCoverageBeanMap
+				.keySet());
+
+		Map<String, List<ApexMethodCodeCoverageBean>> testMethodsByClass = new HashMap<String, List<ApexMethodCodeCoverageBean>>();
+		for (ApexMethodCodeCoverageBean methodCodeCoverageRecord : methodCodeCoverageRecords) {
+			List<ApexMethodCodeCoverageBean> testMethods = testMethodsByClass.get(methodCodeCoverageRecord
+					.getApexClassorTriggerId());
+			if (testMethods == null) {
+				testMethods = new ArrayList<ApexMethodCodeCoverageBean>();
+				testMethodsByClass.put(methodCodeCoverageRecord.getApexClassorTriggerId(), testMethods);
 			}
+			testMethods.add(methodCodeCoverageRecord);
+		}
+		for (Map.Entry<String, List<ApexMethodCodeCoverageBean>> testMethods : testMethodsByClass.entrySet()) {
+			ApexClassCodeCoverageBean apexClassCodeCoverageBean = apexClassCodeCoverageBeanMap.get(testMethods
+					.getKey());
+			if (apexClassCodeCoverageBean != null) {
+				apexClassCodeCoverageBean.setTestMethodNames(testMethods.getValue().toArray(
+						new ApexMethodCodeCoverageBean[testMethods.getValue().size()]));
+			}
+		}
+		return methodCodeCoverageRecords;
+	}
 
+	/*
+	 * Builds the test coverage index(see TestCoverageIndex) and writes it to
+	 * the given file
+	 * 
+	 * @param methodCodeCoverageRecords - code coverage of the classes by each
+	 * test method
+	 * 
+	 * @param indexFile - file to write the index to
+	 */
+	public void buildTestCoverageIndex(List<ApexMethodCodeCoverageBean> methodCodeCoverageRecords, File indexFile) {
+		try {
+			TestCoverageIndex.write(indexFile, methodCodeCoverageRecords);
+			LOG.info("Test coverage index with " + methodCodeCoverageRecords.size() + " records written to "
+					+ indexFile.getAbsolutePath());
+		} catch (IOException e) {
+			ApexUnitUtils.shutDownWithDebugLog(e, "IOException encountered while writing the test coverage index to "
+					+ indexFile.getAbsolutePath() + ": " + e.getMessage());
 		}
 	}
 
@@ -1,25 +1,56 @@
 package com.sforce.cd.apexUnit.client.codeCoverage;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
-import org.json.simple.JSONObject;
-public class CodeCoverageTask implements Callable<JSONObject>{
+/*
+ * Fires a code coverage query on the Tooling API and decodes the records of
+ * all the pages of its result using the given decoder. The decoder must not
+ * hold any state across the responses, as it is shared by the tasks running
+ * in parallel
+ */
+public class CodeCoverageTask<T> implements Callable<List<T>>{
 	
 	private final String relativeUrl;
 	private final String soqlcc;
 	private final String oauthTocken;
+	private final ToolingQueryPageDecoder<T> decoder;
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 	
-	public CodeCoverageTask(String relativeUrl, String soqlcc, String oauthTocken){
+	public CodeCoverageTask(String relativeUrl, String soqlcc, String oauthTocken,
+			ToolingQueryPageDecoder<T> decoder, AdaptiveConcurrencyLimiter concurrencyLimiter){
 		this.relativeUrl = relativeUrl;
 		this.soqlcc = soqlcc;
 		this.oauthTocken = oauthTocken;
+		this.decoder = decoder;
+		this.concurrencyLimiter = concurrencyLimiter;
 	}
 	
 
-	public JSONObject call() throws Exception {
+	/*
+	 * Fires the code coverage query and collects the records of all the pages.
+	 * Each page request waits for a slot of the concurrency limiter and is
+	 * retried on its own(see ToolingQueryIterator)
+	 */
+	public List<T> call() throws Exception {
+		return fetchCodeCoverageRecords(relativeUrl, soqlcc, oauthTocken, decoder, concurrencyLimiter);
+	}
 
-		return WebServiceInvoker.doGet(relativeUrl, soqlcc, oauthTocken);
-				
+	/*
+	 * Fires the code coverage query and collects the records from all the
+	 * pages of the result
+	 */
+	public static <T> List<T> fetchCodeCoverageRecords(String relativeUrl, String soqlcc, String oauthTocken,
+			ToolingQueryPageDecoder<T> decoder, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+		final List<T> codeCoverageRecords = new ArrayList<T>();
+		ToolingQueryIterator.forEachPage(relativeUrl, soqlcc, oauthTocken, decoder, concurrencyLimiter,
+				new ToolingQueryIterator.PageHandler<T>() {
+					public void handlePage(ToolingQueryPage<T> page) {
+						codeCoverageRecords.addAll(page.getRecords());
+					}
+				});
+		return codeCoverageRecords;
 	}
 
 }
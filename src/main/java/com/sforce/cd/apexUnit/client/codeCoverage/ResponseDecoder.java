@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Decoder for the body of a web service response
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import java.io.IOException;
+import java.io.Reader;
+
+public interface ResponseDecoder<T> {
+
+	/*
+	 * Decodes the response body while it is read from the connection
+	 *
+	 * @param reader - reader over the response body
+	 *
+	 * @return decoded response
+	 */
+	T decode(Reader reader) throws IOException;
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * On-disk index of the code coverage of the Apex classes/triggers by each test method
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.sforce.cd.apexUnit.report.ApexMethodCodeCoverageBean;
+import com.sforce.cd.apexUnit.report.LineCoverage;
+
+/*
+ * TestCoverageIndex maps each (test class, test method) pair to the
+ * classes/triggers it covers along with the covered/uncovered lines, and
+ * each class/trigger to the test methods covering it.
+ *
+ * The index is written once to a file and read back through a memory mapped
+ * buffer; only the string table is loaded on the heap. Layout of the
+ * file(all numbers are big endian ints):
+ *
+ * header: MAGIC, VERSION, #strings, #entries, #lines
+ *
+ * strings: sorted distinct Ids and test method names; each as the length
+ * followed by the UTF-8 bytes
+ *
+ * entries: one per record of ApexCodeCoverage, sorted by test class, test
+ * method and class; each as ENTRY_SIZE ints(see the ENTRY_* offsets). The
+ * strings are referred to by their index in the string table
+ *
+ * class index: indexes of the entries sorted by class and test
+ *
+ * lines: covered lines followed by the uncovered lines of each entry
+ */
+public class TestCoverageIndex {
+	private static final int MAGIC = 0x41554349;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 5 * 4;
+	// offsets of the fields(in ints) within an entry
+	private static final int ENTRY_TEST_CLASS = 0;
+	private static final int ENTRY_TEST_METHOD = 1;
+	private static final int ENTRY_CLASS = 2;
+	private static final int ENTRY_NUM_LINES_COVERED = 3;
+	private static final int ENTRY_NUM_LINES_UNCOVERED = 4;
+	private static final int ENTRY_LINES_OFFSET = 5;
+	private static final int ENTRY_COVERED_LINES = 6;
+	private static final int ENTRY_UNCOVERED_LINES = 7;
+	private static final int ENTRY_SIZE = 8;
+
+	private final ByteBuffer buffer;
+	private final String[] strings;
+	private final int entryCount;
+	private final int entriesPosition;
+	private final int classIndexPosition;
+	private final int linesPosition;
+
+	private TestCoverageIndex(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a test coverage index or unsupported version");
+		}
+		int stringCount = buffer.getInt(8);
+		entryCount = buffer.getInt(12);
+		strings = new String[stringCount];
+		int position = HEADER_SIZE;
+		for (int i = 0; i < stringCount; i++) {
+			byte[] bytes = new byte[buffer.getInt(position)];
+			ByteBuffer stringBuffer = buffer.duplicate();
+			stringBuffer.position(position + 4);
+			stringBuffer.get(bytes);
+			strings[i] = new String(bytes, "UTF-8");
+			position += 4 + bytes.length;
+		}
+		entriesPosition = position;
+		classIndexPosition = entriesPosition + entryCount * ENTRY_SIZE * 4;
+		linesPosition = classIndexPosition + entryCount * 4;
+	}
+
+	/*
+	 * Opens the index written to the given file. The file is memory mapped
+	 * and must not be modified while the index is in use
+	 *
+	 * @param indexFile - file written using write()
+	 */
+	public static TestCoverageIndex open(File indexFile) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile, "r");
+		try {
+			FileChannel fileChannel = randomAccessFile.getChannel();
+			// the mapping remains valid after the channel is closed
+			MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+			return new TestCoverageIndex(buffer);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/*
+	 * Writes the index for the given code coverage records. The index is
+	 * written to a temporary file that replaces the given file once complete
+	 *
+	 * @param indexFile - file to write the index to
+	 *
+	 * @param records - code coverage of the classes/triggers by each test
+	 * method
+	 */
+	public static void write(File indexFile, Collection<ApexMethodCodeCoverageBean> records) throws IOException {
+		Set<String> stringSet = new TreeSet<String>();
+		final List<ApexMethodCodeCoverageBean> entries = new ArrayList<ApexMethodCodeCoverageBean>();
+		for (ApexMethodCodeCoverageBean record : records) {
+			if (record.getApexTestClassID() != null && record.getApexClassorTriggerId() != null) {
+				stringSet.add(record.getApexTestClassID());
+				stringSet.add(testMethodNameOf(record));
+				stringSet.add(record.getApexClassorTriggerId());
+				entries.add(record);
+			}
+		}
+		final String[] stringTable = stringSet.toArray(new String[stringSet.size()]);
+		// entries sorted by test class, test method and class
+		final int[][] keys = new int[entries.size()][];
+		Integer[] order = new Integer[entries.size()];
+		for (int i = 0; i < entries.size(); i++) {
+			ApexMethodCodeCoverageBean entry = entries.get(i);
+			keys[i] = new int[] { Arrays.binarySearch(stringTable, entry.getApexTestClassID()),
+					Arrays.binarySearch(stringTable, testMethodNameOf(entry)),
+					Arrays.binarySearch(stringTable, entry.getApexClassorTriggerId()) };
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return compareKeys(keys[first], keys[second], ENTRY_TEST_CLASS, ENTRY_TEST_METHOD, ENTRY_CLASS);
+			}
+		});
+		// positions in the sorted entries, sorted by class and test
+		Integer[] classOrder = new Integer[order.length];
+		for (int i = 0; i < order.length; i++) {
+			classOrder[i] = i;
+		}
+		final Integer[] sortedOrder = order;
+		Arrays.sort(classOrder, new Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return compareKeys(keys[sortedOrder[first]], keys[sortedOrder[second]], ENTRY_CLASS,
+						ENTRY_TEST_CLASS, ENTRY_TEST_METHOD);
+			}
+		});
+
+		File tmpFile = new File(indexFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			List<int[]> coveredLines = new ArrayList<int[]>();
+			List<int[]> uncoveredLines = new ArrayList<int[]>();
+			int lineCount = 0;
+			for (Integer i : order) {
+				LineCoverage lineCoverage = entries.get(i).getLineCoverage();
+				coveredLines.add(lineCoverage != null ? lineCoverage.getCoveredLines() : new int[0]);
+				uncoveredLines.add(lineCoverage != null ? lineCoverage.getUncoveredLines() : new int[0]);
+				lineCount += coveredLines.get(coveredLines.size() - 1).length
+						+ uncoveredLines.get(uncoveredLines.size() - 1).length;
+			}
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(stringTable.length);
+			out.writeInt(entries.size());
+			out.writeInt(lineCount);
+			for (String string : stringTable) {
+				byte[] bytes = string.getBytes("UTF-8");
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			int linesOffset = 0;
+			for (int i = 0; i < order.length; i++) {
+				ApexMethodCodeCoverageBean entry = entries.get(order[i]);
+				int[] key = keys[order[i]];
+				out.writeInt(key[ENTRY_TEST_CLASS]);
+				out.writeInt(key[ENTRY_TEST_METHOD]);
+				out.writeInt(key[ENTRY_CLASS]);
+				out.writeInt(entry.getCoveredLines());
+				out.writeInt(entry.getUnCoveredLines());
+				out.writeInt(linesOffset);
+				out.writeInt(coveredLines.get(i).length);
+				out.writeInt(uncoveredLines.get(i).length);
+				linesOffset += coveredLines.get(i).length + uncoveredLines.get(i).length;
+			}
+			for (Integer i : classOrder) {
+				out.writeInt(i);
+			}
+			for (int i = 0; i < order.length; i++) {
+				for (int line : coveredLines.get(i)) {
+					out.writeInt(line);
+				}
+				for (int line : uncoveredLines.get(i)) {
+					out.writeInt(line);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		if (indexFile.exists() && !indexFile.delete()) {
+			throw new IOException("Unable to replace the test coverage index " + indexFile);
+		}
+		if (!tmpFile.renameTo(indexFile)) {
+			throw new IOException("Unable to write the test coverage index " + indexFile);
+		}
+	}
+
+	private static String testMethodNameOf(ApexMethodCodeCoverageBean record) {
+		return record.getTestMethodName() != null ? record.getTestMethodName() : "";
+	}
+
+	private static int compareKeys(int[] first, int[] second, int... fields) {
+		for (int field : fields) {
+			if (first[field] != second[field]) {
+				return first[field] < second[field] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	/*
+	 * @return test methods covering the given class/trigger along with the
+	 * lines they cover; empty if none
+	 */
+	public List<ApexMethodCodeCoverageBean> getTestsCoveringClass(String apexClassOrTriggerId) {
+		List<ApexMethodCodeCoverageBean> tests = new ArrayList<ApexMethodCodeCoverageBean>();
+		int classIndex = Arrays.binarySearch(strings, apexClassOrTriggerId);
+		if (classIndex < 0) {
+			return tests;
+		}
+		// first position in the class index with the class
+		int low = 0;
+		int high = entryCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getField(getEntryAtClassPosition(mid), ENTRY_CLASS) < classIndex) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		for (int i = low; i < entryCount && getField(getEntryAtClassPosition(i), ENTRY_CLASS) == classIndex; i++) {
+			tests.add(getEntry(getEntryAtClassPosition(i)));
+		}
+		return tests;
+	}
+
+	/*
+	 * @return Ids of the test classes covering the given class/trigger
+	 */
+	public Set<String> getTestClassIdsCoveringClass(String apexClassOrTriggerId) {
+		Set<String> testClassIds = new LinkedHashSet<String>();
+		for (ApexMethodCodeCoverageBean test : getTestsCoveringClass(apexClassOrTriggerId)) {
+			testClassIds.add(test.getApexTestClassID());
+		}
+		return testClassIds;
+	}
+
+	/*
+	 * @param apexTestClassId - Id of the test class
+	 *
+	 * @param testMethodName - name of the test method; null for all the test
+	 * methods of the test class
+	 *
+	 * @return classes/triggers covered by the test along with the lines
+	 * covered; empty if none
+	 */
+	public List<ApexMethodCodeCoverageBean> getClassesCoveredByTest(String apexTestClassId, String testMethodName) {
+		List<ApexMethodCodeCoverageBean> classes = new ArrayList<ApexMethodCodeCoverageBean>();
+		int testClassIndex = Arrays.binarySearch(strings, apexTestClassId);
+		int testMethodIndex = testMethodName != null ? Arrays.binarySearch(strings, testMethodName) : -1;
+		if (testClassIndex < 0 || (testMethodName != null && testMethodIndex < 0)) {
+			return classes;
+		}
+		// first entry with the test class(and method)
+		int low = 0;
+		int high = entryCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int testClass = getField(mid, ENTRY_TEST_CLASS);
+			if (testClass < testClassIndex
+					|| (testClass == testClassIndex && testMethodName != null && getField(mid, ENTRY_TEST_METHOD) < testMethodIndex)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		for (int i = low; i < entryCount && getField(i, ENTRY_TEST_CLASS) == testClassIndex
+				&& (testMethodName == null || getField(i, ENTRY_TEST_METHOD) == testMethodIndex); i++) {
+			classes.add(getEntry(i));
+		}
+		return classes;
+	}
+
+	private int getEntryAtClassPosition(int position) {
+		return buffer.getInt(classIndexPosition + position * 4);
+	}
+
+	private int getField(int entry, int field) {
+		return buffer.getInt(entriesPosition + (entry * ENTRY_SIZE + field) * 4);
+	}
+
+	private int[] getLines(int offset, int count) {
+		int[] lines = new int[count];
+		for (int i = 0; i < count; i++) {
+			lines[i] = buffer.getInt(linesPosition + (offset + i) * 4);
+		}
+		return lines;
+	}
+
+	private ApexMethodCodeCoverageBean getEntry(int entry) {
+		ApexMethodCodeCoverageBean apexMethodCodeCoverageBean = new ApexMethodCodeCoverageBean();
+		apexMethodCodeCoverageBean.setApexTestClassID(strings[getField(entry, ENTRY_TEST_CLASS)]);
+		String testMethodName = strings[getField(entry, ENTRY_TEST_METHOD)];
+		apexMethodCodeCoverageBean.setTestMethodName(testMethodName.equals("") ? null : testMethodName);
+		apexMethodCodeCoverageBean.setApexClassorTriggerId(strings[getField(entry, ENTRY_CLASS)]);
+		apexMethodCodeCoverageBean.setCoveredLines(getField(entry, ENTRY_NUM_LINES_COVERED));
+		apexMethodCodeCoverageBean.setUnCoveredLines(getField(entry, ENTRY_NUM_LINES_UNCOVERED));
+		int linesOffset = getField(entry, ENTRY_LINES_OFFSET);
+		int coveredLineCount = getField(entry, ENTRY_COVERED_LINES);
+		int uncoveredLineCount = getField(entry, ENTRY_UNCOVERED_LINES);
+		if (coveredLineCount + uncoveredLineCount > 0) {
+			apexMethodCodeCoverageBean.setLineCoverage(new LineCoverage(getLines(linesOffset, coveredLineCount),
+					getLines(linesOffset + coveredLineCount, uncoveredLineCount)));
+		}
+		return apexMethodCodeCoverageBean;
+	}
+}
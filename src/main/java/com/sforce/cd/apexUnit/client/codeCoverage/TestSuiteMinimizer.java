@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Computes a subset of the test classes that preserves the code coverage of the source classes
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.sforce.cd.apexUnit.report.ApexMethodCodeCoverageBean;
+import com.sforce.cd.apexUnit.report.ApexReportBean;
+import com.sforce.cd.apexUnit.report.LineCoverage;
+
+/*
+ * TestSuiteMinimizer turns the code coverage of the source classes by each
+ * test method(ApexCodeCoverage) into the lines covered by each test class
+ * and selects a subset of the test classes covering all the lines covered by
+ * the complete suite.
+ *
+ * Selecting the cheapest such subset is a weighted set cover problem; the
+ * subset is computed greedily by picking the test class with the most
+ * uncovered lines per millisecond of run time until all the lines are
+ * covered. The gain of a test class only decreases as the other test classes
+ * are picked, hence the gains are recomputed lazily for the test class on top
+ * of the queue only. Test classes picked early may be made redundant by the
+ * ones picked later; such test classes are dropped afterwards, the slowest
+ * first
+ */
+public class TestSuiteMinimizer {
+
+	// lines of each class covered by each test class
+	private final Map<String, Map<String, LineCoverage>> coverageByTestClass = new LinkedHashMap<String, Map<String, LineCoverage>>();
+	// run time(in milliseconds) of each test class
+	private final Map<String, Long> runTimeByTestClass = new HashMap<String, Long>();
+	// run time assumed for the test classes that are not part of the run
+	private final long averageRunTime;
+	private final List<String> selectedTestClassIds = new ArrayList<String>();
+	private int coveredLineCount = 0;
+
+	/*
+	 * @param methodCodeCoverageRecords - code coverage of the source classes
+	 * by each test method including the covered lines
+	 *
+	 * @param apexReportBeans - results of the test methods of the run; the run
+	 * time of the test classes is taken from here
+	 */
+	public TestSuiteMinimizer(Collection<ApexMethodCodeCoverageBean> methodCodeCoverageRecords,
+			ApexReportBean[] apexReportBeans) {
+		for (ApexMethodCodeCoverageBean record : methodCodeCoverageRecords) {
+			if (record.getLineCoverage() == null || record.getLineCoverage().getNumLinesCovered() == 0) {
+				continue;
+			}
+			Map<String, LineCoverage> coverageByClass = coverageByTestClass.get(record.getApexTestClassID());
+			if (coverageByClass == null) {
+				coverageByClass = new HashMap<String, LineCoverage>();
+				coverageByTestClass.put(record.getApexTestClassID(), coverageByClass);
+			}
+			LineCoverage lineCoverage = coverageByClass.get(record.getApexClassorTriggerId());
+			coverageByClass.put(record.getApexClassorTriggerId(),
+					lineCoverage == null ? record.getLineCoverage() : lineCoverage.union(record.getLineCoverage()));
+		}
+		if (apexReportBeans != null) {
+			for (ApexReportBean apexReportBean : apexReportBeans) {
+				Long runTime = runTimeByTestClass.get(apexReportBean.getApexClassId());
+				runTimeByTestClass.put(apexReportBean.getApexClassId(), (runTime == null ? 0L : runTime)
+						+ apexReportBean.getTimeElapsed());
+			}
+		}
+		long totalRunTime = 0L;
+		for (Long runTime : runTimeByTestClass.values()) {
+			totalRunTime += runTime;
+		}
+		averageRunTime = runTimeByTestClass.isEmpty() ? 0L : totalRunTime / runTimeByTestClass.size();
+	}
+
+	/*
+	 * Computes the subset of the test classes covering all the covered lines
+	 *
+	 * @return Ids of the selected test classes in the order they are picked
+	 */
+	public List<String> minimize() {
+		// lines covered by the selected test classes
+		Map<String, LineCoverage> coveredLines = new HashMap<String, LineCoverage>();
+		PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>();
+		for (String testClassId : coverageByTestClass.keySet()) {
+			candidates.add(new Candidate(testClassId, getGain(testClassId, coveredLines)));
+		}
+		selectedTestClassIds.clear();
+		coveredLineCount = 0;
+		while (!candidates.isEmpty()) {
+			Candidate candidate = candidates.poll();
+			int gain = getGain(candidate.testClassId, coveredLines);
+			if (gain == 0) {
+				continue;
+			}
+			Candidate recomputed = new Candidate(candidate.testClassId, gain);
+			if (!candidates.isEmpty() && recomputed.compareTo(candidates.peek()) > 0) {
+				// some other test class is cheaper now
+				candidates.add(recomputed);
+				continue;
+			}
+			Map<String, LineCoverage> coverageByClass = coverageByTestClass.get(candidate.testClassId);
+			for (Map.Entry<String, LineCoverage> coverage : coverageByClass.entrySet()) {
+				LineCoverage lineCoverage = coveredLines.get(coverage.getKey());
+				coveredLines.put(coverage.getKey(),
+						lineCoverage == null ? coverage.getValue() : lineCoverage.union(coverage.getValue()));
+			}
+			selectedTestClassIds.add(candidate.testClassId);
+			coveredLineCount += gain;
+		}
+		removeRedundantTestClasses();
+		return selectedTestClassIds;
+	}
+
+	/*
+	 * Drops the selected test classes whose lines are all covered by the other
+	 * selected test classes, the slowest first
+	 */
+	private void removeRedundantTestClasses() {
+		// number of the selected test classes covering each line of each class
+		Map<String, int[]> coverageCounts = new HashMap<String, int[]>();
+		for (String testClassId : selectedTestClassIds) {
+			for (Map.Entry<String, LineCoverage> coverage : coverageByTestClass.get(testClassId).entrySet()) {
+				int[] coveredLines = coverage.getValue().getCoveredLines();
+				int[] counts = coverageCounts.get(coverage.getKey());
+				int maxLine = coveredLines[coveredLines.length - 1];
+				if (counts == null || counts.length <= maxLine) {
+					int[] grownCounts = new int[maxLine + 1];
+					if (counts != null) {
+						System.arraycopy(counts, 0, grownCounts, 0, counts.length);
+					}
+					counts = grownCounts;
+					coverageCounts.put(coverage.getKey(), counts);
+				}
+				for (int line : coveredLines) {
+					counts[line]++;
+				}
+			}
+		}
+		List<String> testClassIdsBySlowest = new ArrayList<String>(selectedTestClassIds);
+		Collections.sort(testClassIdsBySlowest, new Comparator<String>() {
+			public int compare(String first, String second) {
+				long firstRunTime = getRunTime(first);
+				long secondRunTime = getRunTime(second);
+				return firstRunTime > secondRunTime ? -1 : (firstRunTime < secondRunTime ? 1 : 0);
+			}
+		});
+		for (String testClassId : testClassIdsBySlowest) {
+			if (isRedundant(testClassId, coverageCounts)) {
+				for (Map.Entry<String, LineCoverage> coverage : coverageByTestClass.get(testClassId).entrySet()) {
+					int[] counts = coverageCounts.get(coverage.getKey());
+					for (int line : coverage.getValue().getCoveredLines()) {
+						counts[line]--;
+					}
+				}
+				selectedTestClassIds.remove(testClassId);
+			}
+		}
+	}
+
+	private boolean isRedundant(String testClassId, Map<String, int[]> coverageCounts) {
+		for (Map.Entry<String, LineCoverage> coverage : coverageByTestClass.get(testClassId).entrySet()) {
+			int[] counts = coverageCounts.get(coverage.getKey());
+			for (int line : coverage.getValue().getCoveredLines()) {
+				if (counts[line] < 2) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * @return number of the lines covered by the test class that are not
+	 * covered yet
+	 */
+	private int getGain(String testClassId, Map<String, LineCoverage> coveredLines) {
+		int gain = 0;
+		for (Map.Entry<String, LineCoverage> coverage : coverageByTestClass.get(testClassId).entrySet()) {
+			LineCoverage lineCoverage = coveredLines.get(coverage.getKey());
+			gain += lineCoverage == null ? coverage.getValue().getNumLinesCovered() : coverage.getValue()
+					.diff(lineCoverage).getNumLinesCovered();
+		}
+		return gain;
+	}
+
+	/*
+	 * @return run time of the test class; the average run time of the test
+	 * classes of the run if the test class was not run
+	 */
+	private long getRunTime(String testClassId) {
+		Long runTime = runTimeByTestClass.get(testClassId);
+		return runTime != null ? runTime : averageRunTime;
+	}
+
+	private long getRunTime(Collection<String> testClassIds) {
+		long runTime = 0L;
+		for (String testClassId : testClassIds) {
+			runTime += getRunTime(testClassId);
+		}
+		return runTime;
+	}
+
+	public int getTestClassCount() {
+		return coverageByTestClass.size();
+	}
+
+	public List<String> getSelectedTestClassIds() {
+		return selectedTestClassIds;
+	}
+
+	/*
+	 * @return number of the lines covered by the selected test classes, which
+	 * is the number of the lines covered by all the test classes
+	 */
+	public int getCoveredLineCount() {
+		return coveredLineCount;
+	}
+
+	/*
+	 * @return run time(in milliseconds) of all the test classes covering the
+	 * source classes
+	 */
+	public long getFullRunTime() {
+		return getRunTime(coverageByTestClass.keySet());
+	}
+
+	/*
+	 * @return run time(in milliseconds) of the selected test classes
+	 */
+	public long getSelectedRunTime() {
+		return getRunTime(selectedTestClassIds);
+	}
+
+	/*
+	 * Writes the names of the selected test classes to the given file in the
+	 * format of the manifest files. Nothing is written if the name of any of
+	 * the selected test classes is unknown, since a manifest without it would
+	 * no longer cover all the covered lines
+	 *
+	 * @param manifestFile - file to write to
+	 *
+	 * @param testClassNames - names of the test classes keyed by their Id
+	 *
+	 * @throws IOException if the manifest could not be written or the name of
+	 * a selected test class is unknown
+	 */
+	public void writeManifest(File manifestFile, Map<String, String> testClassNames) throws IOException {
+		List<String> unknownTestClassIds = new ArrayList<String>();
+		for (String testClassId : selectedTestClassIds) {
+			if (testClassNames.get(testClassId) == null) {
+				unknownTestClassIds.add(testClassId);
+			}
+		}
+		if (!unknownTestClassIds.isEmpty()) {
+			throw new IOException("Names of the selected test classes " + unknownTestClassIds
+					+ " not found; the manifest would not cover all the covered lines without them");
+		}
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifestFile),
+				"UTF-8"));
+		try {
+			for (String testClassId : selectedTestClassIds) {
+				writer.write(testClassNames.get(testClassId));
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/*
+	 * test class to be picked; ordered by the uncovered lines per unit of run
+	 * time, the highest first
+	 */
+	private class Candidate implements Comparable<Candidate> {
+		private final String testClassId;
+		private final double gainPerRunTime;
+
+		private Candidate(String testClassId, int gain) {
+			this.testClassId = testClassId;
+			// every test class takes some time; avoids dividing by 0
+			this.gainPerRunTime = gain / (double) Math.max(1L, getRunTime(testClassId));
+		}
+
+		public int compareTo(Candidate candidate) {
+			return Double.compare(candidate.gainPerRunTime, gainPerRunTime);
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Iterator over all the pages of a Tooling API query result
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sforce.cd.apexUnit.ApexUnitUtils;
+
+/*
+ * Large query results are returned by the Tooling API in pages. Each page
+ * carries the nextRecordsUrl for fetching the page after it. ToolingQueryIterator
+ * follows the nextRecordsUrl till the last page.
+ *
+ * The next page is prefetched in the background as soon as a page is handed
+ * out, so that the page is downloaded and decoded while the caller processes
+ * the current page.
+ *
+ * Each page is a request of its own: a page failing with a retryable error is
+ * retried with an exponential back off without fetching the previous pages
+ * again. If a concurrency limiter is given, a slot is held only while a page
+ * request is in flight and the limiter is fed with the latency of each page
+ * request rather than that of the whole query
+ */
+public class ToolingQueryIterator<T> {
+
+	private static Logger LOG = LoggerFactory.getLogger(ToolingQueryIterator.class);
+	// number of times a page request is fired before giving up on it
+	public static final int MAX_ATTEMPTS = 5;
+	private static final long INITIAL_RETRY_DELAY_IN_MILLIS = 1000L;
+	private static final long MAX_RETRY_DELAY_IN_MILLIS = 30000L;
+	// shared across the iterators; threads are created on demand and reused
+	private static final ExecutorService PREFETCH_POOL = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "apexunit-tooling-query-prefetch");
+			// never hold up the shutdown of ApexUnit
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final String soql;
+	private final String accessToken;
+	private final ToolingQueryPageDecoder<T> pageDecoder;
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+	private Future<ToolingQueryPage<T>> nextPage;
+	private int pagesFetched = 0;
+
+	/*
+	 * Callback that consumes the records of the query one page at a time
+	 */
+	public interface PageHandler<T> {
+		void handlePage(ToolingQueryPage<T> page);
+	}
+
+	/*
+	 * Fires the query for the first page in the background
+	 *
+	 * @param relativeServiceURL - relative service url w.r.t org url for firing
+	 * the query
+	 *
+	 * @param soql - the query string
+	 *
+	 * @param accessToken : access token for the org
+	 *
+	 * @param pageDecoder : decoder for the pages of the query result
+	 */
+	public ToolingQueryIterator(String relativeServiceURL, String soql, String accessToken,
+			ToolingQueryPageDecoder<T> pageDecoder) {
+		this(relativeServiceURL, soql, accessToken, pageDecoder, null);
+	}
+
+	/*
+	 * @param concurrencyLimiter : limiter shared by the queries fired in
+	 * parallel; null if the page requests are not to be limited
+	 */
+	public ToolingQueryIterator(String relativeServiceURL, String soql, String accessToken,
+			ToolingQueryPageDecoder<T> pageDecoder, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+		this.soql = soql;
+		this.accessToken = accessToken;
+		this.pageDecoder = pageDecoder;
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.nextPage = fetchPage(relativeServiceURL, soql);
+	}
+
+	public boolean hasNextPage() {
+		return nextPage != null;
+	}
+
+	/*
+	 * Waits for the next page to be fetched and starts prefetching the page
+	 * after it, if any
+	 *
+	 * @return next page of the query result
+	 */
+	public ToolingQueryPage<T> nextPage() {
+		if (nextPage == null) {
+			return null;
+		}
+		ToolingQueryPage<T> page = null;
+		try {
+			page = nextPage.get();
+		} catch (InterruptedException e) {
+			ApexUnitUtils.shutDownWithDebugLog(e,
+					"Interrupted while fetching the result of the query: " + soql + ". The error says: " + e.getMessage());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof WebServiceException) {
+				// the page failed even after retries
+				nextPage = null;
+				throw (WebServiceException) e.getCause();
+			}
+			ApexUnitUtils.shutDownWithDebugLog(e, "Error encountered while fetching the result of the query: " + soql
+					+ ". The error says: " + e.getMessage());
+		}
+		pagesFetched++;
+		if (page != null && !page.isDone() && page.getNextRecordsUrl() != null) {
+			LOG.debug("Fetched page " + pagesFetched + " of the query result with " + page.getRecords().size()
+					+ " records(total " + page.getTotalSize() + "). Prefetching the next page");
+			nextPage = fetchPage(page.getNextRecordsUrl(), null);
+		} else {
+			nextPage = null;
+		}
+		return page;
+	}
+
+	private Future<ToolingQueryPage<T>> fetchPage(final String relativeServiceURL, final String query) {
+		return PREFETCH_POOL.submit(new Callable<ToolingQueryPage<T>>() {
+			public ToolingQueryPage<T> call() throws InterruptedException {
+				return fetchPageWithRetries(relativeServiceURL, query);
+			}
+		});
+	}
+
+	/*
+	 * Fires the request for a single page once the concurrency limiter allows
+	 * it. Requests failing with a retryable error are retried with an
+	 * exponential back off; the slot is released while waiting to retry
+	 */
+	private ToolingQueryPage<T> fetchPageWithRetries(String relativeServiceURL, String query)
+			throws InterruptedException {
+		long retryDelay = INITIAL_RETRY_DELAY_IN_MILLIS;
+		for (int attempt = 1;; attempt++) {
+			if (concurrencyLimiter != null) {
+				concurrencyLimiter.acquire();
+			}
+			long start = System.currentTimeMillis();
+			try {
+				ToolingQueryPage<T> page = WebServiceInvoker.doGet(relativeServiceURL, query, accessToken,
+						pageDecoder);
+				if (concurrencyLimiter != null) {
+					concurrencyLimiter.onSuccess(System.currentTimeMillis() - start);
+				}
+				return page;
+			} catch (WebServiceException e) {
+				if (concurrencyLimiter != null) {
+					concurrencyLimiter.onFailure(e.isOverload());
+				}
+				if (!e.isRetryable() || attempt >= MAX_ATTEMPTS) {
+					throw e;
+				}
+				LOG.warn("Attempt " + attempt + " of " + MAX_ATTEMPTS + " to fetch page " + (pagesFetched + 1)
+						+ " of the query result failed: " + e.getMessage() + ". Retrying in " + retryDelay / 1000
+						+ " seconds");
+			} catch (RuntimeException e) {
+				// e.g. a malformed response; not worth retrying
+				if (concurrencyLimiter != null) {
+					concurrencyLimiter.onFailure(false);
+				}
+				throw e;
+			}
+			Thread.sleep(retryDelay);
+			retryDelay = Math.min(MAX_RETRY_DELAY_IN_MILLIS, retryDelay * 2);
+		}
+	}
+
+	/*
+	 * Fires the query and hands over all the pages of the result to the given
+	 * handler as they arrive
+	 *
+	 * @return number of records handed over to the page handler
+	 */
+	public static <T> int forEachPage(String relativeServiceURL, String soql, String accessToken,
+			ToolingQueryPageDecoder<T> pageDecoder, PageHandler<T> pageHandler) {
+		return forEachPage(relativeServiceURL, soql, accessToken, pageDecoder, null, pageHandler);
+	}
+
+	/*
+	 * Same as above, with the page requests limited by the given concurrency
+	 * limiter
+	 */
+	public static <T> int forEachPage(String relativeServiceURL, String soql, String accessToken,
+			ToolingQueryPageDecoder<T> pageDecoder, AdaptiveConcurrencyLimiter concurrencyLimiter,
+			PageHandler<T> pageHandler) {
+		int recordCount = 0;
+		ToolingQueryIterator<T> toolingQueryIterator = new ToolingQueryIterator<T>(relativeServiceURL, soql,
+				accessToken, pageDecoder, concurrencyLimiter);
+		while (toolingQueryIterator.hasNextPage()) {
+			ToolingQueryPage<T> page = toolingQueryIterator.nextPage();
+			if (page != null) {
+				pageHandler.handlePage(page);
+				recordCount += page.getRecords().size();
+			}
+		}
+		return recordCount;
+	}
+}
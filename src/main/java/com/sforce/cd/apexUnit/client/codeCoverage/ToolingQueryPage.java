@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * One page(batch) of records returned by a Tooling API query
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ToolingQueryPage<T> {
+
+	private final List<T> records = new ArrayList<T>();
+	private int totalSize = 0;
+	private boolean done = true;
+	// relative url for fetching the next page. null for the last page
+	private String nextRecordsUrl;
+
+	public List<T> getRecords() {
+		return records;
+	}
+
+	public int getTotalSize() {
+		return totalSize;
+	}
+
+	public void setTotalSize(int totalSize) {
+		this.totalSize = totalSize;
+	}
+
+	public boolean isDone() {
+		return done;
+	}
+
+	public void setDone(boolean done) {
+		this.done = done;
+	}
+
+	public String getNextRecordsUrl() {
+		return nextRecordsUrl;
+	}
+
+	public void setNextRecordsUrl(String nextRecordsUrl) {
+		this.nextRecordsUrl = nextRecordsUrl;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Streaming decoder for the response of a Tooling API query
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sforce.cd.apexUnit.report.LineCoverage;
+
+/*
+ * Decodes the query response token by token using gson's JsonReader, without
+ * building a tree of the complete response. The envelope of the
+ * response(size, done, nextRecordsUrl) is decoded here while each of the
+ * records is handed over to decodeRecord() of the subclass
+ */
+public abstract class ToolingQueryPageDecoder<T> implements ResponseDecoder<ToolingQueryPage<T>> {
+
+	public ToolingQueryPage<T> decode(Reader reader) throws IOException {
+		ToolingQueryPage<T> page = new ToolingQueryPage<T>();
+		JsonReader jsonReader = new JsonReader(reader);
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			String name = jsonReader.nextName();
+			if (jsonReader.peek() == JsonToken.NULL) {
+				jsonReader.nextNull();
+			} else if (name.equals("totalSize")) {
+				page.setTotalSize(jsonReader.nextInt());
+			} else if (name.equals("done")) {
+				page.setDone(jsonReader.nextBoolean());
+			} else if (name.equals("nextRecordsUrl")) {
+				page.setNextRecordsUrl(jsonReader.nextString());
+			} else if (name.equals("records")) {
+				jsonReader.beginArray();
+				while (jsonReader.hasNext()) {
+					T record = decodeRecord(jsonReader);
+					if (record != null) {
+						page.getRecords().add(record);
+					}
+				}
+				jsonReader.endArray();
+			} else {
+				jsonReader.skipValue();
+			}
+		}
+		jsonReader.endObject();
+		return page;
+	}
+
+	/*
+	 * Decodes a single record of the query result. The reader is positioned at
+	 * the beginning of the record object and must be positioned after its end
+	 * on return
+	 *
+	 * @return decoded record or null if the record is to be skipped
+	 */
+	protected abstract T decodeRecord(JsonReader jsonReader) throws IOException;
+
+	/*
+	 * Reads the Coverage field(covered and uncovered line numbers) of a code
+	 * coverage record
+	 *
+	 * @return line coverage; null if the field has neither of the line
+	 * numbers
+	 */
+	protected static LineCoverage readLineCoverage(JsonReader jsonReader) throws IOException {
+		int[] coveredLines = null;
+		int[] uncoveredLines = null;
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			String name = jsonReader.nextName();
+			if (jsonReader.peek() == JsonToken.NULL) {
+				jsonReader.nextNull();
+			} else if (name.equals("coveredLines")) {
+				coveredLines = readIntArray(jsonReader);
+			} else if (name.equals("uncoveredLines")) {
+				uncoveredLines = readIntArray(jsonReader);
+			} else {
+				jsonReader.skipValue();
+			}
+		}
+		jsonReader.endObject();
+		if (coveredLines == null && uncoveredLines == null) {
+			return null;
+		}
+		return new LineCoverage(coveredLines, uncoveredLines);
+	}
+
+	/*
+	 * Reads an array of line numbers into an int array
+	 */
+	protected static int[] readIntArray(JsonReader jsonReader) throws IOException {
+		int[] values = new int[64];
+		int size = 0;
+		jsonReader.beginArray();
+		while (jsonReader.hasNext()) {
+			if (size == values.length) {
+				int[] grownValues = new int[values.length * 2];
+				System.arraycopy(values, 0, grownValues, 0, size);
+				values = grownValues;
+			}
+			values[size++] = jsonReader.nextInt();
+		}
+		jsonReader.endArray();
+		int[] trimmedValues = new int[size];
+		System.arraycopy(values, 0, trimmedValues, 0, size);
+		return trimmedValues;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Exception thrown when a web service call to the org fails
+ */
+
+package com.sforce.cd.apexUnit.client.codeCoverage;
+
+public class WebServiceException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+	// status code for the failures without a http response(e.g. IO errors)
+	public static final int NO_STATUS_CODE = -1;
+
+	private final int statusCode;
+
+	public WebServiceException(int statusCode, String message) {
+		super(message);
+		this.statusCode = statusCode;
+	}
+
+	public WebServiceException(String message, Throwable cause) {
+		super(message, cause);
+		this.statusCode = NO_STATUS_CODE;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/*
+	 * @return true if the org rejected the call because it is overloaded or
+	 * the request limits are exceeded
+	 */
+	public boolean isOverload() {
+		return statusCode == 429 || statusCode == 503
+				|| (getMessage() != null && getMessage().contains("REQUEST_LIMIT_EXCEEDED"));
+	}
+
+	/*
+	 * @return true if the same call may succeed when retried
+	 */
+	public boolean isRetryable() {
+		return isOverload() || statusCode == NO_STATUS_CODE || statusCode == 500 || statusCode == 502
+				|| statusCode == 504;
+	}
+}
@@ -21,17 +21,21 @@ import java.net.URLEncoder;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpException;
-import org.apache.commons.httpclient.URI;
-import org.apache.commons.httpclient.URIException;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.io.IOUtils;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 import org.slf4j.Logger;
@@ -49,6 +53,53 @@ import static java.net.URLEncoder.encode;
  */
 public class WebServiceInvoker {
 	private static Logger LOG = LoggerFactory.getLogger(WebServiceInvoker.class);
+	// maximum number of connections kept open with the org. Matches the number
+	// of threads invoking the Tooling API in parallel for computing code
+	// coverage
+	public static final int MAX_CONNECTIONS_PER_HOST = CodeCoverageComputer.MAX_PARALLEL_COVERAGE_REQUESTS;
+	private static MultiThreadedHttpConnectionManager connectionManager = null;
+	private static HttpClient httpClient = null;
+	private static final AtomicInteger requestsExecuted = new AtomicInteger(0);
+
+	/*
+	 * Returns the http client shared across all the web service calls. The
+	 * connections are pooled and kept alive so that subsequent calls to the
+	 * org don't pay for a new TCP/TLS handshake. Proxy configuration is
+	 * applied once when the client is created
+	 * 
+	 * @return : thread safe http client
+	 */
+	static synchronized HttpClient getHttpClient() {
+		if (httpClient == null) {
+			connectionManager = new MultiThreadedHttpConnectionManager();
+			HttpConnectionManagerParams connectionManagerParams = connectionManager.getParams();
+			connectionManagerParams.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+			connectionManagerParams.setMaxTotalConnections(MAX_CONNECTIONS_PER_HOST);
+			connectionManagerParams.setSoTimeout(0);
+			connectionManagerParams.setStaleCheckingEnabled(true);
+			httpClient = new HttpClient(connectionManager);
+			// Set proxy if needed
+			if (CommandLineArguments.getProxyHost() != null && CommandLineArguments.getProxyPort() != null) {
+				LOG.debug("Setting proxy configuraiton to " + CommandLineArguments.getProxyHost() + " on port "
+						+ CommandLineArguments.getProxyPort());
+				HostConfiguration hostConfiguration = httpClient.getHostConfiguration();
+				hostConfiguration.setProxy(CommandLineArguments.getProxyHost(), CommandLineArguments.getProxyPort());
+				httpClient.setHostConfiguration(hostConfiguration);
+			}
+		}
+		return httpClient;
+	}
+
+	/*
+	 * Returns the statistics of the shared connection pool
+	 * 
+	 * @return : pool statistics as String
+	 */
+	public static synchronized String getConnectionPoolStats() {
+		int connectionsInPool = connectionManager == null ? 0 : connectionManager.getConnectionsInPool();
+		return "Requests executed: " + requestsExecuted.get() + ", connections in pool: " + connectionsInPool
+				+ ", max connections per host: " + MAX_CONNECTIONS_PER_HOST;
+	}
 
 	/*
 	 * Utility to perform HTTP post operation on the orgUrl with the specific
@@ -62,7 +113,7 @@ public class WebServiceInvoker {
 	public HashMap<String, String> doPost(String relativeServiceURL) {
 
 		PostMethod post = null;
-		HttpClient httpclient = new HttpClient();
+		HttpClient httpclient = getHttpClient();
 		String requestString = "";
 		HashMap<String, String> responseMap = new HashMap<String, String>();
 		
@@ -71,22 +122,13 @@ public class WebServiceInvoker {
 			// the client id and secret is applicable across all dev orgs
 			requestString = generateRequestString();
 			String authorizationServerURL = CommandLineArguments.getOrgUrl() + relativeServiceURL;
-			httpclient.getParams().setSoTimeout(0);
-
-			// Set proxy if needed
-			if (CommandLineArguments.getProxyHost() != null && CommandLineArguments.getProxyPort() != null) {
-				LOG.debug("Setting proxy configuraiton to " + CommandLineArguments.getProxyHost() + " on port "
-						+ CommandLineArguments.getProxyPort());
-				HostConfiguration hostConfiguration = httpclient.getHostConfiguration();
-				hostConfiguration.setProxy(CommandLineArguments.getProxyHost(),CommandLineArguments.getProxyPort());
-				httpclient.setHostConfiguration(hostConfiguration);
-			}
 
 			post = new PostMethod(authorizationServerURL);
 			post.addRequestHeader("Content-Type", "application/x-www-form-urlencoded");
 			post.addRequestHeader("X-PrettyPrint", "1");
 			post.setRequestEntity(new StringRequestEntity(requestString, "application/x-www-form-urlencoded", "UTF-8"));
 			httpclient.executeMethod(post);
+			requestsExecuted.incrementAndGet();
 
 			Gson json = new Gson();
 			// obtain the result map from the response body and get the access
@@ -124,6 +166,66 @@ public class WebServiceInvoker {
 	}
 
 	public static JSONObject doGet(String relativeServiceURL, String soql, String accessToken) {
+		return doGet(appendQueryToURL(relativeServiceURL, soql), accessToken);
+	}
+
+	/*
+	 * method to fire the query using the access token for the org and decode
+	 * the response while it is being read
+	 * 
+	 * @param relativeServiceURL - relative service url w.r.t org url for firing
+	 * the query
+	 * 
+	 * @param soql - the query string
+	 * 
+	 * @param accessToken : access token for the org(generated in the post
+	 * method)
+	 * 
+	 * @param responseDecoder : decoder for the response body
+	 * 
+	 * @return : decoded response of the get request
+	 */
+	public static <T> T doGet(String relativeServiceURL, String soql, String accessToken,
+			ResponseDecoder<T> responseDecoder) {
+		String authorizationServerURL = CommandLineArguments.getOrgUrl()
+				+ appendQueryToURL(relativeServiceURL, soql);
+		LOG.debug("Start GET operation for the url..." + authorizationServerURL);
+		GetMethod get = new GetMethod(authorizationServerURL);
+		get.addRequestHeader("Content-Type", "application/json");
+		get.setRequestHeader("Authorization", "Bearer " + accessToken);
+		get.addRequestHeader("Accept-Encoding", "gzip");
+		InputStream instream = null;
+		T response = null;
+		try {
+			getHttpClient().executeMethod(get);
+			requestsExecuted.incrementAndGet();
+			int statusCode = get.getStatusCode();
+			LOG.debug("Status code : " + statusCode + " for the url " + authorizationServerURL);
+			instream = getResponseBodyAsStream(get);
+			if (statusCode < 200 || statusCode >= 300) {
+				// error responses are small; surface the error code(s) sent by
+				// the org so that the caller can decide whether to retry
+				String errorResponse = instream == null ? "" : IOUtils.toString(instream, "UTF-8");
+				throw new WebServiceException(statusCode, "GET request for the url " + authorizationServerURL
+						+ " failed with status code " + statusCode + ": " + errorResponse);
+			}
+			if (instream != null) {
+				response = responseDecoder.decode(new InputStreamReader(instream, "UTF-8"));
+			}
+		} catch (IOException e) {
+			throw new WebServiceException("Encountered IO exception when executing the get method for the url "
+					+ authorizationServerURL + ". The error says: " + e.getMessage(), e);
+		} finally {
+			get.releaseConnection();
+			IOUtils.closeQuietly(instream);
+		}
+		return response;
+	}
+
+	/*
+	 * appends the url encoded query(if any) to the relative service url
+	 */
+	private static String appendQueryToURL(String relativeServiceURL, String soql) {
 		if (soql != null && !soql.equals("")) {
 			try {
 				relativeServiceURL += "/query/?q=" + encode(soql, "UTF-8");
@@ -133,12 +235,14 @@ public class WebServiceInvoker {
 				.shutDownWithDebugLog(e, "Error encountered while trying to encode the query string using UTF-8 format. The error says: "+ e.getMessage());
 			}
 		}
-		return doGet(relativeServiceURL, accessToken);
+		return relativeServiceURL;
 	}
 
 	/*
 	 * method to perform get operation using the access token for the org and
-	 * return the json response
+	 * return the json response. If the response is a query result that spans
+	 * multiple pages, the records of all the pages are fetched and appended to
+	 * the records of the returned json
 	 * 
 	 * @param relativeServiceURL - relative service url w.r.t org url for firing
 	 * post request
@@ -148,24 +252,42 @@ public class WebServiceInvoker {
 	 * 
 	 * @return : json response from the get request
 	 */
+	@SuppressWarnings("unchecked")
 	public static JSONObject doGet(String relativeServiceURL, String accessToken) {
+		JSONObject json = doGetPage(relativeServiceURL, accessToken);
+		JSONObject page = json;
+		while (page != null && page.get("nextRecordsUrl") != null && !Boolean.TRUE.equals(page.get("done"))) {
+			String nextRecordsUrl = (String) page.get("nextRecordsUrl");
+			LOG.debug("Fetching subsequent batch of result from: " + nextRecordsUrl);
+			page = doGetPage(nextRecordsUrl, accessToken);
+			if (page != null) {
+				JSONArray records = (JSONArray) json.get("records");
+				JSONArray pageRecords = (JSONArray) page.get("records");
+				if (records != null && pageRecords != null) {
+					records.addAll(pageRecords);
+				}
+				json.put("done", page.get("done"));
+				json.put("nextRecordsUrl", page.get("nextRecordsUrl"));
+			}
+		}
+		return json;
+	}
+
+	/*
+	 * performs a single get operation and returns the json response
+	 */
+	private static JSONObject doGetPage(String relativeServiceURL, String accessToken) {
 
 		LOG.debug("relativeServiceURL in doGet method:" + relativeServiceURL);
-		HttpClient httpclient = new HttpClient();
-		// Set proxy if needed
-		if (CommandLineArguments.getProxyHost() != null && CommandLineArguments.getProxyPort() != null) {
-			LOG.debug("Setting proxy configuraiton to " + CommandLineArguments.getProxyHost() + " on port "
-				+ CommandLineArguments.getProxyPort());
-			HostConfiguration hostConfiguration = httpclient.getHostConfiguration();
-			hostConfiguration.setProxy(CommandLineArguments.getProxyHost(),CommandLineArguments.getProxyPort());
-			httpclient.setHostConfiguration(hostConfiguration);
-		}
+		HttpClient httpclient = getHttpClient();
 		GetMethod get = null;
 
 		String authorizationServerURL = CommandLineArguments.getOrgUrl() + relativeServiceURL;
 		get = new GetMethod(authorizationServerURL);
 		get.addRequestHeader("Content-Type", "application/json");
 		get.setRequestHeader("Authorization", "Bearer " + accessToken);
+		// coverage responses are large and compress well
+		get.addRequestHeader("Accept-Encoding", "gzip");
 		LOG.debug("Start GET operation for the url..." + authorizationServerURL);
 		InputStream instream = null;
 		try {
@@ -173,48 +295,10 @@ public class WebServiceInvoker {
 			LOG.debug("done with get operation");
 
 			JSONObject json = (JSONObject) JSONValue.parse(new InputStreamReader(instream));
-			LOG.debug("is json null? :" + json == null ? "true" : "false");
-			if (json != null) {
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("ToolingApi.get response: " + json.toString());
-					Set<String> keys = castSet(String.class, json.keySet());
-					Iterator<String> jsonKeyIter = keys.iterator();
-					LOG.debug("Response for the GET method: ");
-					while (jsonKeyIter.hasNext()) {
-						String key = jsonKeyIter.next();
-						LOG.debug("key : " + key + ". Value :  " + json.get(key) + "\n");
-						// TODO if query results are too large, only 1st batch
-						// of results
-						// are returned. Need to use the identifier in an
-						// additional query
-						// to retrieve rest of the next batch of results
-
-						if (key.equals("nextRecordsUrl")) {
-							// fire query to the value for this key
-							// doGet((String) json.get(key), accessToken);
-							try {
-								authorizationServerURL = CommandLineArguments.getOrgUrl() + (String) json.get(key);
-								get.setURI(new URI(authorizationServerURL, false));
-								instream = executeHTTPMethod(httpclient, get, authorizationServerURL);
-								JSONObject newJson = (JSONObject) JSONValue.parse(new InputStreamReader(instream));
-								if (newJson != null) {
-									Set<String> newKeys = castSet(String.class, json.keySet());
-									Iterator<String> newJsonKeyIter = newKeys.iterator();
-									while (newJsonKeyIter.hasNext()) {
-										String newKey = newJsonKeyIter.next();
-										json.put(newKey, newJson.get(newKey));
-										LOG.debug("newkey : " + newKey + ". NewValue :  " +  newJson.get(newKey) + "\n");
-									}
-								}
-							
-								} catch (URIException e) {
-									ApexUnitUtils.shutDownWithDebugLog(e, "URI exception while fetching subsequent batch of result");
-								} 
-							}
-							
-						}
-					}
-				}
+			LOG.debug("is json null? :" + (json == null ? "true" : "false"));
+			if (json != null && LOG.isDebugEnabled()) {
+				LOG.debug("ToolingApi.get response: " + json.toString());
+			}
 			return json;
 		} finally {
 			get.releaseConnection();
@@ -247,6 +331,7 @@ public class WebServiceInvoker {
 			String authorizationServerURL) {
 		try {
 			httpclient.executeMethod(get);
+			requestsExecuted.incrementAndGet();
 		} catch (HttpException e) {
 			ApexUnitUtils
 			.shutDownWithDebugLog(e, "Encountered HTTP exception when executing get method using OAuth authentication for the url "+ authorizationServerURL 
@@ -261,12 +346,7 @@ public class WebServiceInvoker {
 		
 		InputStream instream = null;
 		try {
-			// don't delete the below line --i.e. getting response body as
-			// string. Getting response as stream fails upon deleting the below
-			// line! strange!
-			String respStr;
-			respStr = get.getResponseBodyAsString();
-			instream = get.getResponseBodyAsStream();
+			instream = getResponseBodyAsStream(get);
 		} catch (IOException e) {
 
 			ApexUnitUtils
@@ -275,6 +355,21 @@ public class WebServiceInvoker {
 		return instream;
 	}
 
+	/*
+	 * returns the response body of the executed get method as stream. The
+	 * body is not buffered; it is read straight from the connection by the
+	 * caller. The connection is handed back to the pool once the caller
+	 * releases the method
+	 */
+	private static InputStream getResponseBodyAsStream(GetMethod get) throws IOException {
+		InputStream instream = get.getResponseBodyAsStream();
+		Header contentEncoding = get.getResponseHeader("Content-Encoding");
+		if (instream != null && contentEncoding != null && contentEncoding.getValue().contains("gzip")) {
+			instream = new GZIPInputStream(instream);
+		}
+		return instream;
+	}
+
 	/*
 	 * Method to cast a collection of objects to a set of given type
 	 * 
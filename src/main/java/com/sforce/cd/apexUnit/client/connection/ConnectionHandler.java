@@ -39,6 +39,9 @@ public class ConnectionHandler {
 	public static int MAX_TIME_OUT_IN_MS_INT;
 	public static String SUPPORTED_VERSION = System.getProperty("API_VERSION");
 	private String MAX_TIME_OUT_IN_MS = System.getProperty("MAX_TIME_OUT_IN_MS");
+	// range of the batch size accepted by the QueryOptions header
+	public static final int MIN_QUERY_BATCH_SIZE = 200;
+	public static final int MAX_QUERY_BATCH_SIZE = 2000;
 
 	private String sessionIdFromConnectorConfig = null;
 	PartnerConnection connection = null;
@@ -107,6 +110,9 @@ public class ConnectionHandler {
 			try {
 				connection = Connector.newConnection(config);
 				setSessionIdFromConnectorConfig(config);
+				// number of records returned by query() and each subsequent
+				// queryMore() call
+				connection.setQueryOptions(getQueryBatchSize());
 				LOG.debug("Partner Connection established with the org!! \n SESSION  ID IN createPartnerConn: "
 						+ sessionIdFromConnectorConfig);
 			} catch (ConnectionException connEx) {
@@ -117,6 +123,20 @@ public class ConnectionHandler {
 		return connection;
 	}
 	
+	/*
+	 * Returns the query batch size given as command line input, limited to
+	 * the range supported by the org
+	 */
+	private int getQueryBatchSize() {
+		int queryBatchSize = CommandLineArguments.getQueryBatchSize();
+		if (queryBatchSize < MIN_QUERY_BATCH_SIZE || queryBatchSize > MAX_QUERY_BATCH_SIZE) {
+			queryBatchSize = Math.max(MIN_QUERY_BATCH_SIZE, Math.min(MAX_QUERY_BATCH_SIZE, queryBatchSize));
+			LOG.warn("Query batch size " + CommandLineArguments.getQueryBatchSize()
+					+ " is out of the supported range. Using " + queryBatchSize + " instead");
+		}
+		return queryBatchSize;
+	}
+
 	/*
 	 * method to retrieve sessionId from connector config
 	 * Used for initializing bulk connection
@@ -20,9 +20,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -31,13 +31,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.sforce.cd.apexUnit.ApexUnitUtils;
-import com.sforce.cd.apexUnit.client.QueryConstructor;
 import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
 import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
+import com.sforce.cd.apexUnit.client.utils.ClassRegistry;
 
 public class ApexManifestFileReader {
 	private static Logger LOG = LoggerFactory.getLogger(ApexManifestFileReader.class);
-	public static ArrayList<String> nonExistantApexClassEntries = new ArrayList<String>();
 	private boolean includeTriggers;
 
 	public ApexManifestFileReader(boolean includeTriggers) {
@@ -76,7 +75,7 @@ public class ApexManifestFileReader {
 			for (String apexClass : apexClassesStrArr) {
 				if (!uniqueSetOfClasses.add(apexClass)) {
 					LOG.warn("Duplicate entry found across manifest files for : "
-							+ ApexClassFetcherUtils.apexClassMap.get(apexClass)
+							+ ClassRegistry.getClassRegistryInstance().getApexClassName(apexClass)
 							+ " . Skipping multiple execution/code coverage computation of this test class/source class");
 				}
 			}
@@ -91,7 +90,9 @@ public class ApexManifestFileReader {
 	// Split up the method for testability
 	private String[] readInputStreamAndConstructClassArray(InputStream inStr) throws IOException {
 		String[] testClassesAsArray = null;
-		ArrayList<String> testClassList = new ArrayList<String>();
+		// names in the order of the manifest file; duplicates are resolved
+		// and reported after all the names are read
+		List<String> apexClassNames = new ArrayList<String>();
 
 		LOG.debug("Input stream: " + inStr);
 		DataInputStream dataIS = new DataInputStream(inStr);
@@ -102,13 +103,13 @@ public class ApexManifestFileReader {
 		while ((strLine = bufferedReader.readLine()) != null) {
 			if (!newline.equals(strLine) && !strLine.equals("") && strLine.length() > 0) {
 				LOG.debug("The line says .... -  " + strLine);
-				insertIntoTestClassesArray(strLine, testClassList);
+				apexClassNames.add(strLine);
 			}
 		}
 		dataIS.close();
 
-		Object[] apexClassesObjArr = testClassList.toArray();
-		testClassesAsArray = (Arrays.copyOf(apexClassesObjArr, apexClassesObjArr.length, String[].class));
+		List<String> testClassList = insertIntoTestClassesArray(apexClassNames);
+		testClassesAsArray = testClassList.toArray(new String[testClassList.size()]);
 		if (LOG.isDebugEnabled()) {
 			ApexClassFetcherUtils.logTheFetchedApexClasses(testClassesAsArray);
 		}
@@ -116,48 +117,37 @@ public class ApexManifestFileReader {
 	}
 	
 	/*
-	 * inserts the classname from manifest file to the test class array
+	 * resolves the classnames from manifest file to class ids. All the names
+	 * are resolved using bulk queries instead of a query per name
 	 * 
-	 * @param strLine - String type - classname provided on manifest file
-	 * @param testClassList - ArrayList of String - test classes saved so far
+	 * @param apexClassNames - List of String - classnames provided on manifest
+	 * file
+	 * 
+	 * @return test class ids in the order of the manifest file without
+	 * duplicates
 	 */
-	private void insertIntoTestClassesArray(String strLine, ArrayList<String> testClassList){
-		String tempTestClassId = null;
-		Map<String, String> namespaceAndName = new HashMap<String, String>();
-		namespaceAndName.put("name",strLine);				
-		
-		String soql = QueryConstructor.generateQueryToFetchApexClass(namespaceAndName.get("namespace"), 
-				namespaceAndName.get("name"));
-		// query using WSC
-		tempTestClassId = ApexClassFetcherUtils.fetchAndAddToMapApexClassIdBasedOnName(
-				ConnectionHandler.getConnectionHandlerInstance().getConnection(), soql);
-		LOG.debug("tempTestClassId: " + tempTestClassId);
-		
-		//triggers are included only for code coverage and not for tests to avoid exception by the platform
-		if (tempTestClassId == null && includeTriggers) {
-			// look if the given class name is a trigger if its not ApexClass
-			String soqlForTrigger = QueryConstructor.generateQueryToFetchApexTrigger(namespaceAndName.get("namespace"), 
-					namespaceAndName.get("name"));
-			// query using WSC
-			tempTestClassId = ApexClassFetcherUtils.fetchAndAddToMapApexClassIdBasedOnName(
-					ConnectionHandler.getConnectionHandlerInstance().getConnection(), soqlForTrigger);
-			LOG.debug("tempTestClassId(TriggerId: " + tempTestClassId);
-		}
-		if (tempTestClassId != null) {
-			if (!testClassList.contains(tempTestClassId)) {
-				testClassList.add(tempTestClassId);
-				ApexClassFetcherUtils.apexClassMap.put(tempTestClassId, strLine);
-			} else {
-				LOG.warn("Duplicate entry found in manifest file for : " + strLine
-						+ " . Skipping multiple execution/code coverage computation of this test class/source class");
-				ApexClassFetcherUtils.duplicateApexClassMap.put(tempTestClassId, strLine);
-			}
+	private List<String> insertIntoTestClassesArray(List<String> apexClassNames) {
+		Map<String, String> apexClassIds = ApexClassFetcherUtils.fetchApexClassIdsBasedOnNames(
+				ConnectionHandler.getConnectionHandlerInstance().getConnection(), null, apexClassNames,
+				includeTriggers);
+		Set<String> testClassSet = new LinkedHashSet<String>();
+		for (String strLine : apexClassNames) {
+			String tempTestClassId = apexClassIds.get(strLine.toLowerCase());
+			LOG.debug("tempTestClassId: " + tempTestClassId);
+			if (tempTestClassId != null) {
+				if (testClassSet.add(tempTestClassId)) {
+					ClassRegistry.getClassRegistryInstance().putApexClassName(tempTestClassId, strLine);
+				} else {
+					LOG.warn("Duplicate entry found in manifest file for : " + strLine
+							+ " . Skipping multiple execution/code coverage computation of this test class/source class");
+					ClassRegistry.getClassRegistryInstance().putDuplicateApexClass(tempTestClassId, strLine);
+				}
 
-		} else {
-			LOG.warn("The class " + strLine + " does not exist in the org.");
-			if (!nonExistantApexClassEntries.contains(strLine)) {
-				nonExistantApexClassEntries.add(strLine);
+			} else {
+				LOG.warn("The class " + strLine + " does not exist in the org.");
+				ClassRegistry.getClassRegistryInstance().addNonExistantApexClassEntry(strLine);
 			}
 		}
+		return new ArrayList<String>(testClassSet);
 	}
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Class that tracks the execution state of a single ApexTestQueueItem(test class) while polling
+ */
+
+package com.sforce.cd.apexUnit.client.testEngine;
+
+import org.apache.commons.lang.time.StopWatch;
+
+/*
+ * State machine for an ApexTestQueueItem:
+ * Holding/Queued/Preparing -> Processing -> Completed/Failed/Aborted
+ * The stop watch measures the time elapsed since the test class started
+ * processing and is used to abort long running tests
+ */
+public class ApexTestQueueItemState {
+
+	public static final String STATUS_PROCESSING = "Processing";
+	public static final String STATUS_COMPLETED = "Completed";
+	public static final String STATUS_FAILED = "Failed";
+	public static final String STATUS_ABORTED = "Aborted";
+
+	private final String id;
+	private final String apexClassId;
+	private final String testName;
+	private String status;
+	private String extendedStatus;
+	private boolean abortRequested = false;
+	private final StopWatch stopWatch = new StopWatch();
+
+	public ApexTestQueueItemState(String id, String apexClassId, String testName, String status) {
+		this.id = id;
+		this.apexClassId = apexClassId;
+		this.testName = testName;
+		this.status = status;
+		stopWatch.start();
+		if (isTerminal()) {
+			stopWatch.stop();
+		}
+	}
+
+	/*
+	 * Moves the queue item to the given status
+	 *
+	 * @param newStatus - status of the queue item as returned by the polling
+	 * query
+	 *
+	 * @return true if the status of the queue item changed
+	 */
+	public boolean updateStatus(String newStatus) {
+		if (newStatus == null || newStatus.equals(status) || isTerminal()) {
+			return false;
+		}
+		if (STATUS_PROCESSING.equals(newStatus)) {
+			// measure the execution time from the moment processing starts
+			stopWatch.reset();
+			stopWatch.start();
+		}
+		status = newStatus;
+		if (isTerminal()) {
+			stopWatch.stop();
+		}
+		return true;
+	}
+
+	public boolean isTerminal() {
+		return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status) || STATUS_ABORTED.equals(status);
+	}
+
+	public boolean isProcessing() {
+		return STATUS_PROCESSING.equals(status);
+	}
+
+	public long getElapsedTimeInMillis() {
+		return stopWatch.getTime();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getApexClassId() {
+		return apexClassId;
+	}
+
+	public String getTestName() {
+		return testName;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public String getExtendedStatus() {
+		return extendedStatus;
+	}
+
+	public void setExtendedStatus(String extendedStatus) {
+		this.extendedStatus = extendedStatus;
+	}
+
+	public boolean isAbortRequested() {
+		return abortRequested;
+	}
+
+	public void setAbortRequested(boolean abortRequested) {
+		this.abortRequested = abortRequested;
+	}
+}
@@ -18,8 +18,10 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,8 +42,8 @@ import com.sforce.async.OperationEnum;
 import com.sforce.cd.apexUnit.ApexUnitUtils;
 import com.sforce.cd.apexUnit.client.QueryConstructor;
 import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
+import com.sforce.cd.apexUnit.client.utils.QueryPageIterator;
 import com.sforce.soap.partner.PartnerConnection;
-import com.sforce.soap.partner.QueryResult;
 import com.sforce.soap.partner.SaveResult;
 import com.sforce.soap.partner.sobject.SObject;
 import com.sforce.ws.ConnectionException;
@@ -53,16 +55,21 @@ public class AsyncBulkApiHandler {
 
 	private static Logger LOG = LoggerFactory.getLogger(AsyncBulkApiHandler.class);
 
+	// maximum number of test classes that are inserted into
+	// ApexTestQueueItem using a single batch
+	public static final int BATCH_SIZE = 200;
+
 	/*
 	 * This method handles the bulk API flow using BulkConnection: 1. Creates
 	 * JobInfo for the ApexTestQueueItem object 2. Creates a list of BatchInfo
-	 * using the csv file(bulk file) 3. Closes the JobInfo object 4. Waits for
-	 * completion of the batch jobs 5. Fetches the results from the Batch jobs
-	 * 6. Returns parentJobId for the batch job results
+	 * (of upto BATCH_SIZE test classes each) using the csv file(bulk file) 3.
+	 * Closes the JobInfo object 4. Waits for completion of all the batch jobs
+	 * 5. Fetches the results from the Batch jobs 6. Returns parentJobIds for
+	 * the results of each batch job, in the order the batches were created
 	 */
-	public String handleBulkApiFlow(PartnerConnection conn, BulkConnection bulkConnection,
+	public List<Set<String>> handleBulkApiFlow(PartnerConnection conn, BulkConnection bulkConnection,
 			String[] testClassesAsArray) {
-		String parentJobId = "";
+		List<Set<String>> parentJobIds = new ArrayList<Set<String>>();
 		JobInfo job;
 		try {
 
@@ -77,15 +84,23 @@ public class AsyncBulkApiHandler {
 			closeJob(bulkConnection, job.getId());
 			// Waits for completion of the batch jobs
 			awaitCompletion(bulkConnection, job, batchInfoList);
-			// Fetches the results from the Batch jobs
-			List<SaveResult> batchResults = checkResults(bulkConnection, job, batchInfoList);
-			// Returns parentJobId for the batch job results
-			if (batchResults != null) {
-				parentJobId = getParentJobIdForTestQueueItems(batchResults, conn);
-			} else {
-				ApexUnitUtils.shutDownWithErrMsg(
-						"Problem encountered while trying to fetch results of the batch job upon completion. "
-								+ "Null batchResult was returned");
+			for (BatchInfo batchInfo : batchInfoList) {
+				// Fetches the results from the Batch job
+				List<SaveResult> batchResults = checkResults(bulkConnection, job,
+						Collections.singletonList(batchInfo));
+				// Returns parentJobId for the batch job results
+				if (batchResults != null) {
+					Set<String> parentJobIdsForBatch = getParentJobIdsForTestQueueItems(batchResults, conn);
+					if (parentJobIdsForBatch.isEmpty()) {
+						ApexUnitUtils.shutDownWithErrMsg("No Parent Job Id returned for the batch " + batchInfo.getId() + ". "
+								+ "This typically means the test classes were not submitted correctly to the (Force.com )test execution engine");
+					}
+					parentJobIds.add(parentJobIdsForBatch);
+				} else {
+					ApexUnitUtils.shutDownWithErrMsg(
+							"Problem encountered while trying to fetch results of the batch job upon completion. "
+									+ "Null batchResult was returned");
+				}
 			}
 		} catch (AsyncApiException e) {
 			ApexUnitUtils
@@ -98,27 +113,32 @@ public class AsyncBulkApiHandler {
 		} finally {
 			bulkConnection = null;
 		}
-		if (parentJobId == null) {
-			ApexUnitUtils.shutDownWithErrMsg("Parent Job Id returned is null. "
-					+ "This typically means the test classes were not submitted correctly to the (Force.com )test execution engine");
-		}
 		LOG.info(
 				"############################# List of Apex test classes successfully submitted to the Force.com test execution engine #############################");
-		return parentJobId;
+		return parentJobIds;
 	}
 
+	/*
+	 * Splits the test classes into batches of upto BATCH_SIZE classes and
+	 * submits all of them back to back to the given job
+	 */
 	public List<BatchInfo> createBatchesForApexClasses(BulkConnection bulkConnection, JobInfo jobInfo,
 			String[] testClassesAsArray) {
 
 		List<BatchInfo> batchInfos = new ArrayList<BatchInfo>();
-		String stringToFeedIntoTheBatch = "ApexClassId\n";
-		for (String testClass : testClassesAsArray) {
-			stringToFeedIntoTheBatch += testClass;
-			stringToFeedIntoTheBatch += "\n";
-		}
-		InputStream inputStream = new ByteArrayInputStream(stringToFeedIntoTheBatch.getBytes());
+		for (int fromIndex = 0; fromIndex < testClassesAsArray.length; fromIndex += BATCH_SIZE) {
+			int toIndex = Math.min(fromIndex + BATCH_SIZE, testClassesAsArray.length);
+			StringBuilder stringToFeedIntoTheBatch = new StringBuilder("ApexClassId\n");
+			for (int i = fromIndex; i < toIndex; i++) {
+				stringToFeedIntoTheBatch.append(testClassesAsArray[i]);
+				stringToFeedIntoTheBatch.append("\n");
+			}
+			InputStream inputStream = new ByteArrayInputStream(stringToFeedIntoTheBatch.toString().getBytes());
 
-		batchInfos = createBatch(inputStream, batchInfos, jobInfo, bulkConnection);
+			batchInfos = createBatch(inputStream, batchInfos, jobInfo, bulkConnection);
+		}
+		LOG.info("Created " + batchInfos.size() + " batch(es) for " + testClassesAsArray.length
+				+ " test classes in the job " + jobInfo.getId());
 
 		return batchInfos;
 	}
@@ -283,49 +303,52 @@ public class AsyncBulkApiHandler {
 	}
 
 	/*
-	 * Fetches the parentJobId for the bulk results
+	 * Fetches the distinct set of parentJobIds for the bulk results. The
+	 * platform may split the inserted ApexTestQueueItems across multiple
+	 * transactions, each of which results in a parent job of its own
 	 */
-	public String getParentJobIdForTestQueueItems(List<SaveResult> bulkResults, PartnerConnection conn) {
+	public Set<String> getParentJobIdsForTestQueueItems(List<SaveResult> bulkResults, PartnerConnection conn) {
 
-		String parentJobId = null;
+		Set<String> parentJobIds = new LinkedHashSet<String>();
 
 		if (bulkResults != null && bulkResults.size() > 0) {
-			SaveResult sr = bulkResults.get(0);
-			String testQueueItemId = sr.getId();
-			String soql = QueryConstructor.fetchParentJobIdForApexTestQueueItem(testQueueItemId);
-			LOG.debug("Query used for fetching parent job ID for bulk results: " + soql);
-			QueryResult queryResult = null;
-			try{
-				queryResult = conn.query(soql);
-			}catch (ConnectionException e) {
-				ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler
-						.logConnectionException(e, conn, soql));
-			} 
-			if (queryResult.isDone()) {
-				// TODO: We need to verify what's the limit of records that the
-				// bulk api can insert in one transaction. multiple transactions
-				// mean multiple parent job ids
-				parentJobId = fetchParentJobId(queryResult);
-				LOG.info("Async test parent job Id : " + parentJobId);
+			Set<String> testQueueItemIds = new HashSet<String>();
+			for (SaveResult sr : bulkResults) {
+				if (sr.getId() != null && !sr.getId().equals("")) {
+					testQueueItemIds.add(sr.getId());
+				}
 			}
+			int queueItemsFetched = 0;
+			for (String soql : QueryConstructor.fetchParentJobIdsForApexTestQueueItems(testQueueItemIds)) {
+				LOG.debug("Query used for fetching parent job IDs for bulk results: " + soql);
+				try {
+					QueryPageIterator queryPageIterator = new QueryPageIterator(conn, soql);
+					while (queryPageIterator.hasNextPage()) {
+						fetchParentJobIds(queryPageIterator.nextPage(), parentJobIds);
+					}
+					queueItemsFetched += queryPageIterator.getTotalSize();
+				} catch (ConnectionException e) {
+					ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler
+							.logConnectionException(e, conn, soql));
+				}
+			}
+			if (queueItemsFetched != testQueueItemIds.size()) {
+				LOG.warn("Fetched parent job IDs for " + queueItemsFetched + " of the " + testQueueItemIds.size()
+						+ " test queue items submitted");
+			}
+			LOG.info("Async test parent job Id(s) : " + parentJobIds);
 		} else {
 			ApexUnitUtils.shutDownWithErrMsg("Invalid bulk results. No bulk results returned.");
 		}
 
-		return parentJobId;
+		return parentJobIds;
 	}
 
-	private String fetchParentJobId(QueryResult queryResult) {
-		String parentJobId = "";
-		if (queryResult.getDone()) {
-			SObject[] sObjects = queryResult.getRecords();
-			if (sObjects != null) {
-				for (SObject sobject : sObjects) {
-					parentJobId = sobject.getField("ParentJobId").toString();
-				}
-				return parentJobId;
+	private void fetchParentJobIds(SObject[] sObjects, Set<String> parentJobIds) {
+		for (SObject sobject : sObjects) {
+			if (sobject.getField("ParentJobId") != null) {
+				parentJobIds.add(sobject.getField("ParentJobId").toString());
 			}
 		}
-		return null;
 	}
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Timer driven scheduler used for polling the status of the test executions
+ */
+
+package com.sforce.cd.apexUnit.client.testEngine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * ScheduledStatusPoller fires the polling queries on a scheduler thread once
+ * the polling interval elapses. The thread waiting for the poll result is
+ * parked in the meantime and does not consume any CPU
+ */
+public class ScheduledStatusPoller {
+
+	private final ScheduledExecutorService scheduler;
+	private final long pollingIntervalInMillis;
+
+	public ScheduledStatusPoller(long pollingIntervalInMillis) {
+		this.pollingIntervalInMillis = pollingIntervalInMillis;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "apexunit-status-poller");
+				// never hold up the shutdown of ApexUnit
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/*
+	 * Waits for the polling interval to elapse, runs the poll task and returns
+	 * its result
+	 *
+	 * @param pollTask - task that fires the polling query
+	 *
+	 * @return result of the poll task
+	 */
+	public <T> T awaitNextPoll(Callable<T> pollTask) throws InterruptedException, ExecutionException {
+		return scheduler.schedule(pollTask, pollingIntervalInMillis, TimeUnit.MILLISECONDS).get();
+	}
+
+	public long getPollingIntervalInMillis() {
+		return pollingIntervalInMillis;
+	}
+
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+}
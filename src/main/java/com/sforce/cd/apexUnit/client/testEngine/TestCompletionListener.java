@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Callback for the test classes(ApexTestQueueItems) reaching a terminal state while polling
+ */
+
+package com.sforce.cd.apexUnit.client.testEngine;
+
+import java.util.List;
+
+public interface TestCompletionListener {
+
+	/*
+	 * Invoked once per poll with the queue items that reached a terminal
+	 * state(Completed/Failed/Aborted) since the previous poll
+	 *
+	 * @param completedTests - queue items that completed since the previous
+	 * poll. Never empty
+	 */
+	void onTestsCompleted(List<ApexTestQueueItemState> completedTests);
+}
@@ -16,6 +16,12 @@ package com.sforce.cd.apexUnit.client.testEngine;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,15 +32,16 @@ import com.sforce.cd.apexUnit.arguments.CommandLineArguments;
 import com.sforce.cd.apexUnit.client.QueryConstructor;
 import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
 import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
+import com.sforce.cd.apexUnit.client.utils.QueryPageIterator;
 import com.sforce.cd.apexUnit.report.ApexReportBean;
 import com.sforce.soap.partner.PartnerConnection;
-import com.sforce.soap.partner.QueryResult;
 import com.sforce.soap.partner.sobject.SObject;
 import com.sforce.ws.ConnectionException;
 
 public class TestExecutor {
 	private static Logger LOG = LoggerFactory.getLogger(TestExecutor.class);
-	private static final int BATCH_SIZE = 200;
+	private static final int BATCH_SIZE = AsyncBulkApiHandler.BATCH_SIZE;
+	private static final int MAX_RECORDS_PER_UPDATE = 200;
 
 	public ApexReportBean[] testExecutionFlow() {
 
@@ -43,7 +50,6 @@ public class TestExecutor {
 		BulkConnection bulkConnection = null;
 		AsyncBulkApiHandler bulkApiHandler = null;
 		String[] testClassesInBatch = null;
-		String parentJobId;
 		ArrayList<ApexReportBean> apexReportBean = null;
 		ApexReportBean[] apexReportBeanArray = null;
 		
@@ -56,16 +62,23 @@ public class TestExecutor {
 		if (LOG.isDebugEnabled()) {
 			ApexClassFetcherUtils.logTheFetchedApexClasses(testClassesAsArray);
 		}
-		String soql = QueryConstructor.getQueryForApexClassInfo(processClassArrayForQuery(testClassesAsArray));
-		QueryResult queryresult = null;
-		try {
-			queryresult = conn.query(soql);
-		} catch (ConnectionException e) {
-			
-			LOG.debug(e.getMessage());
+		List<SObject> s = new ArrayList<SObject>();
+		if (testClassesAsArray != null) {
+			// the test classes are split across as many queries as needed to
+			// keep each query within the length limit of soql
+			for (String soql : QueryConstructor.getQueryForApexClassInfo(Arrays.asList(testClassesAsArray))) {
+				try {
+					QueryPageIterator queryPageIterator = new QueryPageIterator(conn, soql);
+					while (queryPageIterator.hasNextPage()) {
+						s.addAll(Arrays.asList(queryPageIterator.nextPage()));
+					}
+				} catch (ConnectionException e) {
+
+					LOG.debug(e.getMessage());
+				}
+			}
 		}
-		SObject []s= queryresult.getRecords();
-		SObject[] updateResult = new SObject[s.length];
+		SObject[] updateResult = new SObject[s.size()];
 		int i =0;
 		for (SObject sObject : s) {
 			SObject obj = new SObject();
@@ -74,16 +87,20 @@ public class TestExecutor {
 			obj.setField("status", "Aborted");
 			updateResult[i++] = obj;
 		}
-		LOG.info("No of test classes running tests "+queryresult.getSize());
+		LOG.info("No of test classes running tests "+s.size());
 		boolean submitTest = true;
-		if(queryresult.getSize() != 0){
+		if(s.size() != 0){
 			LOG.info("Test Reload "+ CommandLineArguments.isTestReload());
 			if(CommandLineArguments.isTestReload()){
 				
-				try {
-					conn.update(updateResult);
-				} catch (ConnectionException e) {
-					LOG.debug(e.getMessage());
+				// update accepts upto MAX_RECORDS_PER_UPDATE records per call
+				for (int fromIndex = 0; fromIndex < updateResult.length; fromIndex += MAX_RECORDS_PER_UPDATE) {
+					try {
+						conn.update(Arrays.copyOfRange(updateResult, fromIndex,
+								Math.min(fromIndex + MAX_RECORDS_PER_UPDATE, updateResult.length)));
+					} catch (ConnectionException e) {
+						LOG.debug(e.getMessage());
+					}
 				}
 			}
 			else{
@@ -101,60 +118,76 @@ public class TestExecutor {
 		if (testClassesAsArray != null && testClassesAsArray.length > 0) {
 
 			int numOfBatches = 0;
-			int fromIndex = 0;
+			int submittedClasses = 0;
 			int toIndex = 0;
 			apexReportBean = new ArrayList<ApexReportBean>();
 			bulkConnection = connectionHandler.getBulkConnection();
 			bulkApiHandler = new AsyncBulkApiHandler();
 
-			int lastSetOfClasses = testClassesAsArray.length % BATCH_SIZE;
-			if (lastSetOfClasses == 0) {
+			if (testClassesAsArray.length % BATCH_SIZE == 0) {
 				numOfBatches = testClassesAsArray.length / BATCH_SIZE;
 			} else {
 				numOfBatches = testClassesAsArray.length / BATCH_SIZE + 1;
 			}
 
-			for (int count = 0; count < numOfBatches; count++) {
-
-				fromIndex = count * BATCH_SIZE;
-				toIndex = (lastSetOfClasses != 0 && count == numOfBatches - 1) ? (toIndex + lastSetOfClasses)
-						: (fromIndex + BATCH_SIZE);
-
-				testClassesInBatch = Arrays.copyOfRange(testClassesAsArray, fromIndex, toIndex);
-				parentJobId = bulkApiHandler.handleBulkApiFlow(conn, bulkConnection, testClassesInBatch);
-                
-				LOG.info("#####Parent JOB ID  #####"+parentJobId);
-				if (parentJobId != null) {
-					LOG.info("Parent job ID for the submission of the test classes to the Force.com platform is: "
-							+ parentJobId);
-					TestStatusPollerAndResultHandler queryPollerAndResultHandler = new TestStatusPollerAndResultHandler();
-					LOG.info(
-							"############################# Now executing - Apex tests.. #############################");
-					apexReportBeanArray = queryPollerAndResultHandler.fetchResultsFromParentJobId(parentJobId, conn);
-					if(apexReportBeanArray != null){
-						apexReportBean.addAll(Arrays.asList(apexReportBeanArray));
+			// Batches are submitted upfront upto the max number of batches in
+			// flight. Each submitted batch is polled on its own thread and the
+			// next batch is submitted as soon as one of them completes.
+			// Whenever more than one batch can be submitted, all of them are
+			// submitted using a single bulk job to save on the round trips
+			int maxBatchesInFlight = CommandLineArguments.getMaxTestBatchesInFlight();
+			LOG.info("Total number of test batches: " + numOfBatches + ". Maximum test batches in flight: "
+					+ maxBatchesInFlight);
+			ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(maxBatchesInFlight, numOfBatches));
+			CompletionService<ApexReportBean[]> pool = new ExecutorCompletionService<ApexReportBean[]>(threadPool);
+			int batchesInFlight = 0;
+			int completedBatches = 0;
+
+			try {
+				while (submittedClasses < testClassesAsArray.length || batchesInFlight > 0) {
+					if (submittedClasses < testClassesAsArray.length && batchesInFlight < maxBatchesInFlight) {
+						toIndex = Math.min(testClassesAsArray.length,
+								submittedClasses + (maxBatchesInFlight - batchesInFlight) * BATCH_SIZE);
+						testClassesInBatch = Arrays.copyOfRange(testClassesAsArray, submittedClasses, toIndex);
+						submittedClasses = toIndex;
+						List<Set<String>> parentJobIdsForBatches = bulkApiHandler.handleBulkApiFlow(conn,
+								bulkConnection, testClassesInBatch);
+
+						for (Set<String> parentJobIds : parentJobIdsForBatches) {
+							LOG.info("#####Parent JOB ID(s)  #####" + parentJobIds);
+							LOG.info("Parent job ID(s) for the submission of the test classes to the Force.com platform: "
+									+ parentJobIds);
+							pool.submit(new TestResultFetcherTask(parentJobIds, conn));
+							batchesInFlight++;
+						}
+						LOG.info(
+								"############################# Now executing - Apex tests.. #############################");
+					}
+					if (batchesInFlight > 0) {
+						// merge the results of whichever batch completes first
+						apexReportBeanArray = pool.take().get();
+						batchesInFlight--;
+						completedBatches++;
+						if (apexReportBeanArray != null) {
+							apexReportBean.addAll(Arrays.asList(apexReportBeanArray));
+						}
+						LOG.info("Completed test batches: " + completedBatches + " of " + numOfBatches);
 					}
-
 				}
-
+			} catch (InterruptedException e) {
+				ApexUnitUtils.shutDownWithDebugLog(e,
+						"Interrupted while waiting for the test batches to complete: " + e.getMessage());
+			} catch (ExecutionException e) {
+				ApexUnitUtils.shutDownWithDebugLog(e,
+						"Error encountered while fetching results for the test batch: " + e.getMessage());
+			} finally {
+				threadPool.shutdown();
 			}
-			
+
 		}
 		}
 		return apexReportBean.toArray(new ApexReportBean[0]);
 		
 	}
-	
-	private String processClassArrayForQuery(String[] classesAsArray) {
-		String queryString = "";
-		for (int i = 0; i < classesAsArray.length; i++) {
-			queryString += "'" + classesAsArray[i] + "'";
-			queryString += ",";
-		}
-		if (queryString.length() > 1) {
-			queryString = queryString.substring(0, queryString.length() - 1);
-		}
-		return queryString;
-	}
 
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Task that waits for a submitted batch of test classes to complete and fetches its results
+ */
+
+package com.sforce.cd.apexUnit.client.testEngine;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import com.sforce.cd.apexUnit.report.ApexReportBean;
+import com.sforce.soap.partner.PartnerConnection;
+
+public class TestResultFetcherTask implements Callable<ApexReportBean[]> {
+
+	private final Set<String> parentJobIds;
+	private final PartnerConnection conn;
+
+	public TestResultFetcherTask(Set<String> parentJobIds, PartnerConnection conn) {
+		this.parentJobIds = parentJobIds;
+		this.conn = conn;
+	}
+
+	public ApexReportBean[] call() throws Exception {
+		TestStatusPollerAndResultHandler queryPollerAndResultHandler = new TestStatusPollerAndResultHandler();
+		return queryPollerAndResultHandler.fetchResultsFromParentJobIds(parentJobIds, conn);
+	}
+
+}
@@ -15,9 +15,15 @@
 package com.sforce.cd.apexUnit.client.testEngine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
-import org.apache.commons.lang.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,72 +32,128 @@ import com.sforce.cd.apexUnit.arguments.CommandLineArguments;
 import com.sforce.cd.apexUnit.client.QueryConstructor;
 import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
 import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
+import com.sforce.cd.apexUnit.client.utils.ClassRegistry;
+import com.sforce.cd.apexUnit.client.utils.QueryPageIterator;
 import com.sforce.cd.apexUnit.report.ApexReportBean;
 import com.sforce.soap.partner.PartnerConnection;
-import com.sforce.soap.partner.QueryResult;
 import com.sforce.soap.partner.SaveResult;
 import com.sforce.soap.partner.sobject.SObject;
 import com.sforce.ws.ConnectionException;
 
 public class TestStatusPollerAndResultHandler {
 
-	public static boolean testFailures = false;
+	// test batches can be polled concurrently(see TestExecutor), hence the
+	// counters below are accumulated across batches in synchronized methods
+	public static volatile boolean testFailures = false;
 	public static int totalTestMethodsExecuted = 0;
 	public static int totalTestClasses = 0;
 	public static int totalTestClassesAborted = 0;
-	public static List<String> failedTestMethods = new ArrayList<String>();
+	public static List<String> failedTestMethods = Collections.synchronizedList(new ArrayList<String>());
 
 	private static Logger LOG = LoggerFactory.getLogger(TestStatusPollerAndResultHandler.class);
+	// maximum number of records that can be updated using a single update()
+	// call
+	private static final int MAX_RECORDS_PER_UPDATE = 200;
+	// maximum time(in seconds) between two detailed status queries while an
+	// execution time threshold is enforced on the running tests
+	private static final int DETAIL_REFRESH_INTERVAL_IN_SECONDS = 30;
 
 	public ApexReportBean[] fetchResultsFromParentJobId(String parentJobId, PartnerConnection conn) {
-		waitForTestsToComplete(parentJobId, conn);
+		return fetchResultsFromParentJobIds(Collections.singleton(parentJobId), conn);
+	}
+
+	/*
+	 * Waits for the tests of all the given parent jobs to complete and fetches
+	 * their results. A single submission of test classes can result in more
+	 * than one parent job.
+	 * 
+	 * The results of a test class are fetched as soon as the poller reports
+	 * its completion, so that failures are reported right away and there is
+	 * no big result query once all the tests are done
+	 */
+	public ApexReportBean[] fetchResultsFromParentJobIds(Set<String> parentJobIds, final PartnerConnection conn) {
+		final List<ApexReportBean> apexReportBeans = new ArrayList<ApexReportBean>();
+		waitForTestsToComplete(parentJobIds, conn, new TestCompletionListener() {
+			public void onTestsCompleted(List<ApexTestQueueItemState> completedTests) {
+				apexReportBeans.addAll(fetchResultsForQueueItems(completedTests, conn));
+			}
+		});
 		LOG.info("All tests have now completed executing!!");
+		LOG.info("Total test methods executed for the parent job(s) " + parentJobIds + ": " + apexReportBeans.size());
+		if (apexReportBeans.isEmpty()) {
+			return null;
+		}
+		return apexReportBeans.toArray(new ApexReportBean[apexReportBeans.size()]);
+	}
+
+	/*
+	 * Fetches the test results for the given completed queue items
+	 * 
+	 * @param completedTests - queue items(test classes) that completed
+	 * 
+	 * @return report beans for the test methods of the given test classes
+	 */
+	private List<ApexReportBean> fetchResultsForQueueItems(List<ApexTestQueueItemState> completedTests,
+			PartnerConnection conn) {
 		// Each test method execution is represented by a single ApexTestResult
 		// record.
 		// For example, if an Apex test class contains six test methods,
 		// six ApexTestResult records are created.
 		// These records are in addition to the ApexTestQueueItem record that
 		// represents the Apex class.
-		String soql = QueryConstructor.fetchResultFromApexTestQueueItem(parentJobId);
-
-		LOG.debug(soql);
-		ApexReportBean[] apexReportBeans = null;
-		QueryResult queryResult = null;
-		try {
-			 queryResult = conn.query(soql);
-		} catch (ConnectionException e) {
-			ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler
-					.logConnectionException(e, conn, soql));
+		List<String> queueItemIds = new ArrayList<String>();
+		for (ApexTestQueueItemState completedTest : completedTests) {
+			queueItemIds.add(completedTest.getId());
 		}
-		if (queryResult.getDone()) {
-			int index = 0;
-			SObject[] sObjects = queryResult.getRecords();
-			if (sObjects != null) {
-				totalTestMethodsExecuted = sObjects.length;
-				LOG.info("Total test methods executed: " + TestStatusPollerAndResultHandler.totalTestMethodsExecuted);
-				apexReportBeans = new ApexReportBean[sObjects.length];
-				for (SObject sobject : sObjects) {
-					ApexReportBean apexReportBean = populateReportBean(conn, sobject);
-					apexReportBeans[index++] = apexReportBean;
+		final List<ApexReportBean> apexReportBeans = new ArrayList<ApexReportBean>();
+		final PartnerConnection connection = conn;
+		QueryPageIterator.PageHandler pageHandler = new QueryPageIterator.PageHandler() {
+			public void handlePage(SObject[] records) {
+				// resolve the names of all the test classes of the page
+				// upfront instead of a query per test method
+				List<String> apexClassIds = new ArrayList<String>();
+				for (SObject sobject : records) {
+					if (sobject.getField("ApexClassId") != null) {
+						apexClassIds.add(sobject.getField("ApexClassId").toString());
+					}
 				}
+				ApexClassFetcherUtils.fetchApexClassNamesFromIds(connection, apexClassIds);
+				for (SObject sobject : records) {
+					ApexReportBean apexReportBean = populateReportBean(sobject);
+					if (apexReportBean != null) {
+						apexReportBeans.add(apexReportBean);
+					}
+				}
+			}
+		};
+		// the queue items of a poll are split across as many queries as
+		// needed to keep each query within the soql length limit
+		for (String soql : QueryConstructor.fetchResultsForApexTestQueueItems(queueItemIds)) {
+			try {
+				// the results are paginated for the test classes with large
+				// number of test methods
+				addToTotalTestMethodsExecuted(QueryPageIterator.forEachPage(conn, soql, pageHandler));
+			} catch (ConnectionException e) {
+				ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(e, conn, soql));
 			}
 		}
 		return apexReportBeans;
 	}
 
-	private ApexReportBean populateReportBean(PartnerConnection conn, SObject sobject) {
+	private ApexReportBean populateReportBean(SObject sobject) {
 
 		String apexClassId = sobject.getField("ApexClassId").toString();
 		ApexReportBean apexReportBean = null;
 		if (apexClassId != null) {
 			apexReportBean = new ApexReportBean();
 			apexReportBean.setApexClassId(sobject.getField("ApexClassId").toString());
-			if (ApexClassFetcherUtils.apexClassMap.get(apexReportBean.getApexClassId()) != null) {
+			// names of the test classes are resolved in bulk before the report
+			// beans are populated(see fetchResultsForQueueItems)
+			if (ClassRegistry.getClassRegistryInstance().getApexClassName(apexReportBean.getApexClassId()) != null) {
 				apexReportBean
-						.setApexClassName(ApexClassFetcherUtils.apexClassMap.get(apexReportBean.getApexClassId()));
+						.setApexClassName(ClassRegistry.getClassRegistryInstance().getApexClassName(apexReportBean.getApexClassId()));
 			} else {
-				apexReportBean.setApexClassName(
-						ApexClassFetcherUtils.fetchApexTestClassNameFromId(conn, apexReportBean.getApexClassId()));
+				apexReportBean.setApexClassName("");
 			}
 			if (sobject.getField("MethodName") != null) {
 				apexReportBean.setMethodName(sobject.getField("MethodName").toString());
@@ -105,6 +167,8 @@ public class TestStatusPollerAndResultHandler {
 				if (outcome.equalsIgnoreCase("fail") || outcome.equalsIgnoreCase("compilefail")) {
 					testFailures = true;
 					failedTestMethods.add(apexReportBean.getApexClassName() + "." + apexReportBean.getMethodName());
+					LOG.info("Test method failure for : " + apexReportBean.getApexClassName() + "."
+							+ apexReportBean.getMethodName() + " : " + apexReportBean.getMessage());
 				}
 			}
 			if (sobject.getField("RunTime") != null) {
@@ -123,170 +187,375 @@ public class TestStatusPollerAndResultHandler {
 	}
 
 	public boolean waitForTestsToComplete(String parentJobId, PartnerConnection conn) {
-		String soql = QueryConstructor.getTestExecutionStatus(parentJobId);
+		return waitForTestsToComplete(Collections.singleton(parentJobId), conn);
+	}
+
+	/*
+	 * Polls the status of all the ApexTestQueueItems of the given parent jobs
+	 * at once. Each status query updates the state of every queue item, the
+	 * execution time threshold is enforced for all the running items on each
+	 * poll and the method returns as soon as the last item reaches a terminal
+	 * state.
+	 * 
+	 * Polling is two-tiered: each poll only fetches the progress counters of
+	 * the parent jobs from AsyncApexJob. The detailed ApexTestQueueItem query
+	 * is fired only when the number of processed items changes(or
+	 * periodically, to track the running items when a execution time
+	 * threshold is set) and is limited to the items modified since the
+	 * previous detailed query
+	 */
+	public boolean waitForTestsToComplete(Set<String> parentJobIds, PartnerConnection conn) {
+		return waitForTestsToComplete(parentJobIds, conn, null);
+	}
+
+	/*
+	 * Polls the status of the ApexTestQueueItems of the given parent jobs(see
+	 * above) and notifies the listener, if any, of the queue items reaching a
+	 * terminal state after every poll
+	 */
+	public boolean waitForTestsToComplete(Set<String> parentJobIds, PartnerConnection conn,
+			TestCompletionListener completionListener) {
+		List<String> statusQueries = QueryConstructor.getTestExecutionStatus(parentJobIds);
+		List<String> jobStatusQueries = QueryConstructor.getAsyncApexJobStatus(parentJobIds);
 		// String soql =
 		// QueryConstructor.getTestExecutionStatusAndTransactionTime(parentJobId);
 
-		QueryResult queryResult;
 		boolean testsCompleted = false;
+		ScheduledStatusPoller statusPoller = new ScheduledStatusPoller(
+				CommandLineArguments.getTestStatusPollingInterval() * 1000L);
+		Map<String, ApexTestQueueItemState> queueItemStates = new LinkedHashMap<String, ApexTestQueueItemState>();
+		int pollsPerDetailRefresh = Math.max(1,
+				DETAIL_REFRESH_INTERVAL_IN_SECONDS / CommandLineArguments.getTestStatusPollingInterval());
 
 		try {
-			LOG.debug(soql);
-			int index = 0;
-			queryResult = conn.query(soql);
-
-			if (queryResult.getDone()) {
-				SObject[] sObjects = queryResult.getRecords();
-
-				if (sObjects != null) {
-					String status = "";
-					int totalTests = sObjects.length;
-					totalTestClasses = totalTests;
-					int remainingTests = totalTests;
-					LOG.info("Total test classes to execute: " + totalTestClasses);
-					String testId = "";
-					String testName = "";
-					String id = "";
-					StopWatch stopWatch = new StopWatch();
-					long startTime = 0;
-					long endTime = 0;
-					for (SObject sobject : sObjects) {
-						sobject.setType("ApexTestQueueItem");
-						status = sobject.getField("Status").toString();
-						testId = sobject.getField("ApexClassId").toString();
-						id = sobject.getField("Id").toString();
-						LOG.debug("ID for ApexTestQueueItem: " + id);
-						testName = ApexClassFetcherUtils.apexClassMap.get(testId);
-						LOG.info("Now executing the test class: " + testName + " (" + CommandLineArguments.getOrgUrl()
-								+ "/" + testId + " ) " + "Status : " + status);
-						stopWatch.reset();
-						stopWatch.start();
-						startTime = stopWatch.getTime();
-						LOG.debug("Start time: " + startTime);
-
-						while (status.equals("Processing") || status.equals("Queued") || status.equals("Preparing")
-								|| !status.equals("Completed")) {
-
-							// break out of the loop if the test failed
-							if (status.equals("Failed")) {
-								LOG.info("Test class failure for : " + testName + " ("
-										+ CommandLineArguments.getOrgUrl() + "/" + testId + " ) ");
-								break;
-							} else if (status.equals("Aborted")) {
-								LOG.info("Test : " + testName + " (" + CommandLineArguments.getOrgUrl() + "/" + testId
-										+ " ) has been aborted.");
-								totalTestClassesAborted++;
-								break;
-							}
-							// Abort the long running tests based on user
-							// input(default: 10 minutes)
-							// stopWatch.getTime() will be in milliseconds,
-							// hence divide by 1000 to convert to seconds
-							// maxTestExecTimeThreshold will be in minutes,
-							// hence multiply by 60 to convert to seconds
-
-							if (CommandLineArguments.getMaxTestExecTimeThreshold() != null && stopWatch.getTime()
-									/ 1000.0 > CommandLineArguments.getMaxTestExecTimeThreshold() * 60
-									&& status.equals("Processing")) {
-								LOG.info("Oops! This test is a long running test. "
-										+ CommandLineArguments.getMaxTestExecTimeThreshold()
-										+ " minutes elapsed; aborting the test: " + testName);
-
-								// create new sobject for updating the record
-								SObject newSObject = new SObject();
-								newSObject.setType("ApexTestQueueItem");
-								newSObject.setField("Id", id);
-								// abort the test using DML, set status to
-								// "Aborted"
-								newSObject.setField("Status", "Aborted");
-								totalTestClassesAborted++;
-								// logging the status and id fields to compare
-								// them for pre and post update call
-
-								try {
-									// TODO : up to 10 records can be updated at
-									// a time by update() call.
-									// add the logic to leverage this feature.
-									// Currently only one record is being
-									// updated(aborted)
-
-									// Challenge: By the time we wait for 10
-									// records that needs to be aborted, the
-									// 'to-be-aborted' test might continue to
-									// run and might get completed
-
-									// update() call- analogous to UPDATE
-									// Statement in SQL
-									SaveResult[] saveResults = conn.update(new SObject[] { newSObject });
-
-									LOG.debug("Stop time: " + stopWatch.getTime());
-									stopWatch.stop();
-
-									for (int i = 0; i < saveResults.length; i++) {
-										if (saveResults[i].isSuccess()) {
-											LOG.debug("The record " + saveResults[i].getId()
-													+ " was updated successfully");
-											LOG.info("Aborted test case: " + testName
-													+ " since the test took more time than the threshold execution time of "
-													+ CommandLineArguments.getMaxTestExecTimeThreshold() + " mins");
-										} else {
-											// There were errors during the
-											// update call, so loop through and
-											// print them out
-
-											StringBuffer errorMsg = new StringBuffer();
-											errorMsg.append("Record " + saveResults[i].getId() + " failed to save");
-											for (int j = 0; j < saveResults[i].getErrors().length; j++) {
-												com.sforce.soap.partner.Error err = saveResults[i].getErrors()[j];
-												errorMsg.append("error code: " + err.getStatusCode().toString());
-												errorMsg.append("error message: " + err.getMessage());
-											}
-											ApexUnitUtils.shutDownWithErrMsg(errorMsg.toString());
-										}
-									}
-									LOG.debug("After update--" + newSObject.getField("Status").toString());
-									break;
-								} catch (ConnectionException e) {
-									ApexUnitUtils
-											.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(e, conn, soql));
-								}
-
-							}
-
-							LOG.debug("Status of the test class: " + testName + " (" + CommandLineArguments.getOrgUrl()
-									+ "/" + testId + " ) " + " is : " + status);
-
-							while (stopWatch.getTime() % 1000 != 0) {
-								// wait, till 1 second elapses
-							}
-							LOG.debug("Firing polling query at " + stopWatch.getTime());
-							queryResult = conn.query(soql);
-							sObjects = queryResult.getRecords();
-							status = sObjects[index].getField("Status").toString();
-						}
-						endTime = stopWatch.getTime();
-						// get and log extended status for the test
-						if (sObjects[index] != null && sObjects[index].getField("ExtendedStatus") != null) {
-							String extendedStatus = sObjects[index].getField("ExtendedStatus").toString();
-							LOG.info("Test status for " + testName + ":" + extendedStatus);
-						}
-						LOG.info("Completed executing the test class: " + testName + ". Time taken by the test: "
-								+ endTime / 1000 / 60 + " minutes," + (endTime / 1000) % 60 + " seconds");
-						index++;
-						remainingTests = totalTests - index;
-						LOG.info("Total tests executed " + index + " , Remaining tests " + remainingTests);
-						if (remainingTests == 0) {
-							testsCompleted = true;
+			List<ApexTestQueueItemState> completedTests = new ArrayList<ApexTestQueueItemState>();
+			String lastSystemModstamp = fetchQueueItemStates(conn, statusQueries, queueItemStates, completedTests,
+					null);
+			int remainingTests = countRemainingTests(queueItemStates);
+			notifyCompletedTests(completionListener, completedTests);
+			int totalTests = queueItemStates.size();
+			addToTotalTestClasses(totalTests);
+			LOG.info("Total test classes to execute: " + totalTests);
+			int lastJobItemsProcessed = -1;
+			int pollsSinceDetailQuery = 0;
+
+			while (remainingTests > 0) {
+				abortLongRunningTests(queueItemStates, conn);
+				// sleep till the polling interval elapses and fire the
+				// polling query for the parent jobs
+				List<SObject> jobStatusResult = statusPoller.awaitNextPoll(createPollTask(conn, jobStatusQueries));
+				pollsSinceDetailQuery++;
+				int jobItemsProcessed = getJobItemsProcessed(jobStatusResult);
+				boolean refreshRunningTests = CommandLineArguments.getMaxTestExecTimeThreshold() != null
+						&& pollsSinceDetailQuery >= pollsPerDetailRefresh;
+				// jobItemsProcessed is -1 once all the parent jobs are done
+				if (jobItemsProcessed == lastJobItemsProcessed && jobItemsProcessed != -1 && !refreshRunningTests) {
+					continue;
+				}
+				lastJobItemsProcessed = jobItemsProcessed;
+				pollsSinceDetailQuery = 0;
+
+				lastSystemModstamp = fetchQueueItemStates(conn,
+						QueryConstructor.getTestExecutionStatus(parentJobIds, lastSystemModstamp), queueItemStates,
+						completedTests, lastSystemModstamp);
+				int previouslyRemainingTests = remainingTests;
+				remainingTests = countRemainingTests(queueItemStates);
+				notifyCompletedTests(completionListener, completedTests);
+				if (remainingTests != previouslyRemainingTests) {
+					LOG.info("Total tests executed " + (totalTests - remainingTests) + " , Remaining tests "
+							+ remainingTests);
+				}
+				if (jobItemsProcessed == -1 && remainingTests > 0) {
+					// parent jobs are done; make sure the final status of
+					// every queue item is fetched in the next poll
+					lastSystemModstamp = null;
+				}
+			}
+			testsCompleted = true;
+		} catch (InterruptedException e) {
+			ApexUnitUtils.shutDownWithDebugLog(e,
+					"Interrupted while waiting for the tests to complete: " + e.getMessage());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ConnectionException) {
+				ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(
+						(ConnectionException) e.getCause(), conn, jobStatusQueries.toString()));
+			} else {
+				ApexUnitUtils.shutDownWithDebugLog(e,
+						"Error encountered while polling the test execution status: " + e.getMessage());
+			}
+		} finally {
+			statusPoller.shutdown();
+		}
+		return testsCompleted;
+
+	}
+
+	/*
+	 * Sums up the number of processed items across the parent jobs
+	 * 
+	 * @param jobStatusResult - records of the AsyncApexJob status queries
+	 * 
+	 * @return number of processed items or -1 if all the parent jobs reached
+	 * a terminal state
+	 */
+	private int getJobItemsProcessed(List<SObject> jobStatusResult) {
+		int jobItemsProcessed = 0;
+		boolean allJobsDone = true;
+		if (jobStatusResult != null) {
+			for (SObject sobject : jobStatusResult) {
+				if (sobject.getField("JobItemsProcessed") != null) {
+					jobItemsProcessed += Integer.parseInt(sobject.getField("JobItemsProcessed").toString());
+				}
+				String jobStatus = sobject.getField("Status") != null ? sobject.getField("Status").toString() : "";
+				if (!jobStatus.equals(ApexTestQueueItemState.STATUS_COMPLETED)
+						&& !jobStatus.equals(ApexTestQueueItemState.STATUS_FAILED)
+						&& !jobStatus.equals(ApexTestQueueItemState.STATUS_ABORTED)) {
+					allJobsDone = false;
+				}
+				LOG.debug("Parent job " + sobject.getId() + " status: " + jobStatus + " processed items: "
+						+ sobject.getField("JobItemsProcessed") + " of " + sobject.getField("TotalJobItems"));
+			}
+		}
+		return allJobsDone ? -1 : jobItemsProcessed;
+	}
+
+	/*
+	 * Fires the test execution status queries and applies the result to the
+	 * state of the queue items page by page
+	 * 
+	 * @param statusQueries - test execution status queries(one per chunk of
+	 * the parent jobs)
+	 * 
+	 * @param queueItemStates - state of the queue items keyed by queue item id
+	 * 
+	 * @param completedTests - collects the queue items that reached a
+	 * terminal state with this status query
+	 * 
+	 * @param lastSystemModstamp - latest SystemModstamp seen so far
+	 * 
+	 * @return latest SystemModstamp amongst the fetched queue items and the
+	 * SystemModstamp seen so far
+	 */
+	private String fetchQueueItemStates(PartnerConnection conn, List<String> statusQueries,
+			Map<String, ApexTestQueueItemState> queueItemStates, List<ApexTestQueueItemState> completedTests,
+			String lastSystemModstamp) {
+		String latestSystemModstamp = lastSystemModstamp;
+		for (String soql : statusQueries) {
+			try {
+				QueryPageIterator queryPageIterator = new QueryPageIterator(conn, soql);
+				while (queryPageIterator.hasNextPage()) {
+					SObject[] sObjects = queryPageIterator.nextPage();
+					updateQueueItemStates(sObjects, queueItemStates, completedTests);
+					latestSystemModstamp = getLatestSystemModstamp(sObjects, latestSystemModstamp);
+				}
+			} catch (ConnectionException e) {
+				ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(e, conn, soql));
+			}
+		}
+		return latestSystemModstamp;
+	}
+
+	/*
+	 * Returns the latest SystemModstamp amongst the given queue items and the
+	 * SystemModstamp seen so far. The timestamps are in ISO 8601 format and
+	 * hence can be compared as strings
+	 */
+	private String getLatestSystemModstamp(SObject[] sObjects, String lastSystemModstamp) {
+		String latestSystemModstamp = lastSystemModstamp;
+		for (SObject sobject : sObjects) {
+			Object systemModstamp = sobject.getField("SystemModstamp");
+			if (systemModstamp != null && (latestSystemModstamp == null
+					|| systemModstamp.toString().compareTo(latestSystemModstamp) > 0)) {
+				latestSystemModstamp = systemModstamp.toString();
+			}
+		}
+		return latestSystemModstamp;
+	}
+
+	/*
+	 * Applies a page of the status query result to the state of the queue
+	 * items
+	 * 
+	 * @param sObjects - ApexTestQueueItem records fetched by the status query
+	 * 
+	 * @param queueItemStates - state of the queue items keyed by queue item id
+	 * 
+	 * @param completedTests - collects the queue items that reached a
+	 * terminal state with this status query
+	 */
+	private void updateQueueItemStates(SObject[] sObjects, Map<String, ApexTestQueueItemState> queueItemStates,
+			List<ApexTestQueueItemState> completedTests) {
+		for (SObject sobject : sObjects) {
+			String id = sobject.getField("Id").toString();
+			String status = sobject.getField("Status").toString();
+			ApexTestQueueItemState queueItemState = queueItemStates.get(id);
+			if (queueItemState == null) {
+				String testId = sobject.getField("ApexClassId").toString();
+				String testName = ClassRegistry.getClassRegistryInstance().getApexClassName(testId);
+				LOG.debug("ID for ApexTestQueueItem: " + id);
+				LOG.info("Now executing the test class: " + testName + " (" + CommandLineArguments.getOrgUrl()
+						+ "/" + testId + " ) " + "Status : " + status);
+				queueItemState = new ApexTestQueueItemState(id, testId, testName, status);
+				queueItemStates.put(id, queueItemState);
+				if (queueItemState.isTerminal()) {
+					logCompletedTest(queueItemState, sobject);
+					completedTests.add(queueItemState);
+				}
+			} else if (queueItemState.updateStatus(status)) {
+				LOG.debug("Status of the test class: " + queueItemState.getTestName() + " ("
+						+ CommandLineArguments.getOrgUrl() + "/" + queueItemState.getApexClassId() + " ) "
+						+ " is : " + status);
+				if (queueItemState.isTerminal()) {
+					logCompletedTest(queueItemState, sobject);
+					completedTests.add(queueItemState);
+				}
+			}
+		}
+	}
+
+	/*
+	 * @return number of queue items yet to reach a terminal state
+	 */
+	private int countRemainingTests(Map<String, ApexTestQueueItemState> queueItemStates) {
+		int remainingTests = 0;
+		for (ApexTestQueueItemState queueItemState : queueItemStates.values()) {
+			if (!queueItemState.isTerminal()) {
+				remainingTests++;
+			}
+		}
+		return remainingTests;
+	}
+
+	/*
+	 * Hands over the queue items completed with the latest poll to the
+	 * listener and clears the list for the next poll
+	 */
+	private void notifyCompletedTests(TestCompletionListener completionListener,
+			List<ApexTestQueueItemState> completedTests) {
+		if (completionListener != null && !completedTests.isEmpty()) {
+			completionListener.onTestsCompleted(new ArrayList<ApexTestQueueItemState>(completedTests));
+		}
+		completedTests.clear();
+	}
+
+	private void logCompletedTest(ApexTestQueueItemState queueItemState, SObject sobject) {
+		String testName = queueItemState.getTestName();
+		String testId = queueItemState.getApexClassId();
+		if (ApexTestQueueItemState.STATUS_FAILED.equals(queueItemState.getStatus())) {
+			LOG.info("Test class failure for : " + testName + " (" + CommandLineArguments.getOrgUrl() + "/"
+					+ testId + " ) ");
+		} else if (ApexTestQueueItemState.STATUS_ABORTED.equals(queueItemState.getStatus())) {
+			LOG.info("Test : " + testName + " (" + CommandLineArguments.getOrgUrl() + "/" + testId
+					+ " ) has been aborted.");
+			incrementTotalTestClassesAborted();
+		}
+		// get and log extended status for the test
+		if (sobject.getField("ExtendedStatus") != null) {
+			queueItemState.setExtendedStatus(sobject.getField("ExtendedStatus").toString());
+			LOG.info("Test status for " + testName + ":" + queueItemState.getExtendedStatus());
+		}
+		long endTime = queueItemState.getElapsedTimeInMillis();
+		LOG.info("Completed executing the test class: " + testName + ". Time taken by the test: "
+				+ endTime / 1000 / 60 + " minutes," + (endTime / 1000) % 60 + " seconds");
+	}
+
+	/*
+	 * Abort the long running tests based on user input(default: no threshold)
+	 * All the queue items processing for longer than the threshold are
+	 * aborted using a single update call
+	 */
+	private void abortLongRunningTests(Map<String, ApexTestQueueItemState> queueItemStates,
+			PartnerConnection conn) {
+		if (CommandLineArguments.getMaxTestExecTimeThreshold() == null) {
+			return;
+		}
+		// stop watch time will be in milliseconds and
+		// maxTestExecTimeThreshold will be in minutes
+		long maxTestExecTimeInMillis = CommandLineArguments.getMaxTestExecTimeThreshold() * 60 * 1000L;
+		List<ApexTestQueueItemState> testsToAbort = new ArrayList<ApexTestQueueItemState>();
+		for (ApexTestQueueItemState queueItemState : queueItemStates.values()) {
+			if (queueItemState.isProcessing() && !queueItemState.isAbortRequested()
+					&& queueItemState.getElapsedTimeInMillis() > maxTestExecTimeInMillis) {
+				LOG.info("Oops! This test is a long running test. "
+						+ CommandLineArguments.getMaxTestExecTimeThreshold()
+						+ " minutes elapsed; aborting the test: " + queueItemState.getTestName());
+				testsToAbort.add(queueItemState);
+			}
+		}
+		// update() call- analogous to UPDATE Statement in SQL. Upto
+		// MAX_RECORDS_PER_UPDATE records can be updated(aborted) at a time
+		for (int fromIndex = 0; fromIndex < testsToAbort.size(); fromIndex += MAX_RECORDS_PER_UPDATE) {
+			List<ApexTestQueueItemState> testsInThisUpdate = testsToAbort.subList(fromIndex,
+					Math.min(fromIndex + MAX_RECORDS_PER_UPDATE, testsToAbort.size()));
+			SObject[] sObjectsToUpdate = new SObject[testsInThisUpdate.size()];
+			for (int i = 0; i < sObjectsToUpdate.length; i++) {
+				// create new sobject for updating the record
+				SObject newSObject = new SObject();
+				newSObject.setType("ApexTestQueueItem");
+				newSObject.setField("Id", testsInThisUpdate.get(i).getId());
+				// abort the test using DML, set status to "Aborted"
+				newSObject.setField("Status", ApexTestQueueItemState.STATUS_ABORTED);
+				sObjectsToUpdate[i] = newSObject;
+			}
+			try {
+				SaveResult[] saveResults = conn.update(sObjectsToUpdate);
+				for (int i = 0; i < saveResults.length; i++) {
+					ApexTestQueueItemState queueItemState = testsInThisUpdate.get(i);
+					if (saveResults[i].isSuccess()) {
+						LOG.debug("The record " + saveResults[i].getId() + " was updated successfully");
+						LOG.info("Aborted test case: " + queueItemState.getTestName()
+								+ " since the test took more time than the threshold execution time of "
+								+ CommandLineArguments.getMaxTestExecTimeThreshold() + " mins");
+						queueItemState.setAbortRequested(true);
+					} else {
+						// There were errors during the update call, so loop
+						// through and print them out
+						StringBuffer errorMsg = new StringBuffer();
+						errorMsg.append("Record " + queueItemState.getId() + " failed to save");
+						for (int j = 0; j < saveResults[i].getErrors().length; j++) {
+							com.sforce.soap.partner.Error err = saveResults[i].getErrors()[j];
+							errorMsg.append("error code: " + err.getStatusCode().toString());
+							errorMsg.append("error message: " + err.getMessage());
 						}
+						ApexUnitUtils.shutDownWithErrMsg(errorMsg.toString());
 					}
 				}
+			} catch (ConnectionException e) {
+				ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(e, conn));
 			}
-		} catch (ConnectionException e) {
-			ApexUnitUtils
-					.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(e, conn, soql));
 		}
-		return testsCompleted;
+	}
+
+	/*
+	 * Creates the task that fires the polling queries for the test execution
+	 * status and returns the records of all of them
+	 */
+	private Callable<List<SObject>> createPollTask(final PartnerConnection conn, final List<String> queries) {
+		return new Callable<List<SObject>>() {
+			public List<SObject> call() throws ConnectionException {
+				LOG.debug("Firing polling query");
+				List<SObject> records = new ArrayList<SObject>();
+				for (String soql : queries) {
+					QueryPageIterator queryPageIterator = new QueryPageIterator(conn, soql);
+					while (queryPageIterator.hasNextPage()) {
+						records.addAll(Arrays.asList(queryPageIterator.nextPage()));
+					}
+				}
+				return records;
+			}
+		};
+	}
+
+	private static synchronized void addToTotalTestMethodsExecuted(int testMethodsExecuted) {
+		totalTestMethodsExecuted += testMethodsExecuted;
+	}
+
+	private static synchronized void addToTotalTestClasses(int testClasses) {
+		totalTestClasses += testClasses;
+	}
 
+	private static synchronized void incrementTotalTestClassesAborted() {
+		totalTestClassesAborted++;
 	}
 
 }
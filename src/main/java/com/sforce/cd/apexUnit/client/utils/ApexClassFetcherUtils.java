@@ -16,10 +16,19 @@ package com.sforce.cd.apexUnit.client.utils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,8 +51,8 @@ import com.sforce.ws.ConnectionException;
  */
 public class ApexClassFetcherUtils {
 	private static Logger LOG = LoggerFactory.getLogger(ApexClassFetcherUtils.class);
-	public static Map<String, String> apexClassMap = new HashMap<String, String>();
-	public static Map<String, String> duplicateApexClassMap = new HashMap<String, String>();
+	// maximum number of metadata queries fired at the same time
+	private static final int MAX_PARALLEL_METADATA_QUERIES = 4;
 
 	/*
 	 * This method returns a string array of apex test class id's. Either a
@@ -71,10 +80,16 @@ public class ApexClassFetcherUtils {
 		if (CommandLineArguments.getTestRegex() != null) {
 			LOG.debug(" Fetching apex test classes with prefix : " + CommandLineArguments.getTestRegex());
 			consolidatedTestClassesAsArray = fetchApexClassesBasedOnMultipleRegexes(connection, testClassesAsArray,
-					CommandLineArguments.getTestRegex(), false);
+					CommandLineArguments.getTestRegex(), CommandLineArguments.getTestExcludeRegex(), false);
 		} else {
 			consolidatedTestClassesAsArray = testClassesAsArray;
 		}
+		// run only the test classes impacted by the changed classes
+		if (CommandLineArguments.isSelectImpactedTests() && consolidatedTestClassesAsArray != null
+				&& consolidatedTestClassesAsArray.length > 0) {
+			consolidatedTestClassesAsArray = TestImpactAnalyzer.selectImpactedTestClasses(connection,
+					consolidatedTestClassesAsArray);
+		}
 		// if null, no apex test classes fetched to execute; throw warning
 		if (consolidatedTestClassesAsArray == null || consolidatedTestClassesAsArray.length == 0) {
 			ApexUnitUtils.shutDownWithErrMsg("No/Invalid test classes mentioned in manifest file and/or "
@@ -139,8 +154,29 @@ public class ApexClassFetcherUtils {
 	 */
 	public static String[] fetchApexClassesBasedOnMultipleRegexes(PartnerConnection connection, String[] classesAsArray,
 			String regexes, Boolean includeTriggers) {
+		return fetchApexClassesBasedOnMultipleRegexes(connection, classesAsArray, regexes, null, includeTriggers);
+	}
+
+	/*
+	 * Variant of fetchApexClassesBasedOnMultipleRegexes that leaves out the
+	 * classes matching the exclude regexes from the classes fetched using the
+	 * regexes. The classes passed by the calling method are retained as is
+	 * 
+	 * @param excludeRegexes - comma separated regexes for the classes to be
+	 * left out; null if none
+	 */
+	public static String[] fetchApexClassesBasedOnMultipleRegexes(PartnerConnection connection, String[] classesAsArray,
+			String regexes, String excludeRegexes, Boolean includeTriggers) {
 
 		LOG.info("Using regex(es): " + regexes + " to fetch apex classes");
+		if (CommandLineArguments.isUseJavaRegex()) {
+			// all the regexes are matched locally against the names of the
+			// classes fetched in one go
+			String[] classesMatchingRegexes = ApexClassRegexMatcher.fetchApexClassIdsMatchingRegexes(connection,
+					regexes, excludeRegexes, includeTriggers);
+			return mergeUniqueClasses(classesAsArray, regexes, classesMatchingRegexes);
+		}
+		List<Pattern> excludePatterns = ApexClassRegexMatcher.compileRegexes(excludeRegexes, true);
 		String cvsSplitBy = ",";
 		String[] cvsRegexes = regexes.split(cvsSplitBy);
 
@@ -148,7 +184,8 @@ public class ApexClassFetcherUtils {
 			// if both manifest file and testClass regex expression is provided
 			// as command line option, combine the results
 			// Also combine the results obtained for each regex
-			classesAsArray = fetchApexClassesBasedOnRegex(connection, classesAsArray, regex, includeTriggers);
+			classesAsArray = fetchApexClassesBasedOnRegex(connection, classesAsArray, regex, includeTriggers,
+					excludePatterns);
 		}
 		return classesAsArray;
 	}
@@ -164,32 +201,58 @@ public class ApexClassFetcherUtils {
 	 * returned string array of classes includes classes from this array as well
 	 * 
 	 * @param regexes - regex that is used to fetch classes from the org
+	 * 
+	 * @param excludePatterns - patterns for the names of the classes to be
+	 * left out of the classes fetched using the regex
 	 */
 	private static String[] fetchApexClassesBasedOnRegex(PartnerConnection connection, String[] classesAsArray,
-			String regex, Boolean includeTriggers) {
+			String regex, Boolean includeTriggers, List<Pattern> excludePatterns) {
 		if (regex != null && !regex.equals(" ")) {
 			LOG.info("Using regex: \"" + regex + "\" to fetch apex classes");
 			// construct the query
 			String namespace = null;
-			String soql = QueryConstructor.generateQueryToFetchApexClassesBasedOnRegex(namespace, regex);
-			// fire the query using WSC and fetch the results
-			String[] classesAsArrayUsingWSC = constructClassIdArrayUsingWSC(connection, soql);
+			String[] classesAsArrayUsingWSC = excludeApexClasses(
+					fetchApexClassIdsBasedOnRegex(connection, namespace, regex, false), excludePatterns);
+			String[] triggersAsArrayUsingWSC = null;
+			//if include triggers, add triggers to duplicate list as Triggers cannot be tested on force.com
+			if(includeTriggers){
+				triggersAsArrayUsingWSC = excludeApexClasses(
+						fetchApexClassIdsBasedOnRegex(connection, namespace, regex, true), excludePatterns);
+			}
 			// if both manifest file and testClass regex expression is provided
 			// as command line option, combine the results
+			return mergeUniqueClasses(classesAsArray, regex, classesAsArrayUsingWSC, triggersAsArrayUsingWSC);
+		}
+		return classesAsArray;
+	}
 
-			Set<String> uniqueSetOfClasses = new HashSet<String>();
-			ArrayList<String> duplicateList = new ArrayList<String>();
-			// eliminate duplicates from the given class Ids
-			// (just in case duplicates still exist in the class array passed
-			// from the calling method)
-			if (classesAsArray != null && classesAsArray.length > 0) {
-				for (int i = 0; i < classesAsArray.length; i++) {
-					if (!uniqueSetOfClasses.add(classesAsArray[i])) {
-						duplicateList.add(classesAsArray[i]);
-					}
+	/*
+	 * Combines the given class arrays eliminating the duplicates
+	 * 
+	 * @param classesAsArray - Apex Class Ids passed by the calling method
+	 * 
+	 * @param regex - regex(es) used to fetch the classes; used for logging
+	 * 
+	 * @param classesFetchedUsingRegex - Apex Class/Trigger Ids fetched using
+	 * the regex(es); the arrays can be null
+	 */
+	private static String[] mergeUniqueClasses(String[] classesAsArray, String regex,
+			String[]... classesFetchedUsingRegex) {
+		Set<String> uniqueSetOfClasses = new HashSet<String>();
+		ArrayList<String> duplicateList = new ArrayList<String>();
+		// eliminate duplicates from the given class Ids
+		// (just in case duplicates still exist in the class array passed
+		// from the calling method)
+		if (classesAsArray != null && classesAsArray.length > 0) {
+			for (int i = 0; i < classesAsArray.length; i++) {
+				if (!uniqueSetOfClasses.add(classesAsArray[i])) {
+					duplicateList.add(classesAsArray[i]);
 				}
 			}
-			// eliminate duplicates from the classes fetched using the prefix
+		}
+		// eliminate duplicates from the classes/triggers fetched using the
+		// regex
+		for (String[] classesAsArrayUsingWSC : classesFetchedUsingRegex) {
 			if (classesAsArrayUsingWSC != null && classesAsArrayUsingWSC.length > 0) {
 				for (int i = 0; i < classesAsArrayUsingWSC.length; i++) {
 					if (!uniqueSetOfClasses.add(classesAsArrayUsingWSC[i])) {
@@ -197,40 +260,88 @@ public class ApexClassFetcherUtils {
 					}
 				}
 			}
+		}
 
-			//if include triggers, add triggers to duplicate list as Triggers cannot be tested on force.com
-			if(includeTriggers){
-				String soqlForTrigger = QueryConstructor.generateQueryToFetchApexTriggersBasedOnRegex(namespace, regex);
-				String[] triggersAsArrayUsingWSC = constructClassIdArrayUsingWSC(connection, soqlForTrigger);
-
-				if (triggersAsArrayUsingWSC != null && triggersAsArrayUsingWSC.length > 0) {
-					for (int i = 0; i < triggersAsArrayUsingWSC.length; i++) {
-						if (!uniqueSetOfClasses.add(triggersAsArrayUsingWSC[i])) {
-							duplicateList.add(triggersAsArrayUsingWSC[i]);
-						}
-					}
-				}
+		String[] uniqueClassesAsArray = uniqueSetOfClasses.toArray(new String[uniqueSetOfClasses.size()]);
+
+		// log the duplicate classes/triggers found by querying the org with
+		// the given regex
+		if (!duplicateList.isEmpty()) {
+			String logDuplicates = "Found duplicates from the classes fetched from the regex: " + regex
+					+ ". Skipping multiple execution/code coverage computation of these test class/source class(es) :";
+			ClassRegistry classRegistry = ClassRegistry.getClassRegistryInstance();
+			for (int i = 0; i < duplicateList.size(); i++) {
+				String duplicateApexClassName = classRegistry.getApexClassName(duplicateList.get(i));
+				classRegistry.putDuplicateApexClass(duplicateList.get(i), duplicateApexClassName);
+				logDuplicates += " " + duplicateApexClassName + ",";
 			}
+			LOG.info(logDuplicates);
+		}
 
-			// eliminate duplicates from the triggers fetched using the prefix
+		return uniqueClassesAsArray;
+	}
 
-			String[] uniqueClassesAsArray = uniqueSetOfClasses.toArray(new String[uniqueSetOfClasses.size()]);
+	/*
+	 * Leaves out the classes whose names match any of the given patterns
+	 * 
+	 * @return remaining class Ids; null if none
+	 */
+	private static String[] excludeApexClasses(String[] apexClassIds, List<Pattern> excludePatterns) {
+		if (apexClassIds == null || excludePatterns.isEmpty()) {
+			return apexClassIds;
+		}
+		ArrayList<String> remainingApexClassIds = new ArrayList<String>();
+		for (String apexClassId : apexClassIds) {
+			String apexClassName = ClassRegistry.getClassRegistryInstance().getApexClassName(apexClassId);
+			if (apexClassName != null && ApexClassRegexMatcher.matchesAny(apexClassName, excludePatterns)) {
+				LOG.debug("Excluding the Apex class: " + apexClassName);
+			} else {
+				remainingApexClassIds.add(apexClassId);
+			}
+		}
+		if (remainingApexClassIds.isEmpty()) {
+			return null;
+		}
+		return remainingApexClassIds.toArray(new String[remainingApexClassIds.size()]);
+	}
 
-			// log the duplicate classes/triggers found by querying the org with
-			// the given regex
-			if (!duplicateList.isEmpty()) {
-				String logDuplicates = "Found duplicates from the classes fetched from the regex: " + regex
-						+ ". Skipping multiple execution/code coverage computation of these test class/source class(es) :";
-				for (int i = 0; i < duplicateList.size(); i++) {
-					duplicateApexClassMap.put(duplicateList.get(i), apexClassMap.get(duplicateList.get(i)));
-					logDuplicates += " " + apexClassMap.get(duplicateList.get(i)) + ",";
+	/*
+	 * Returns the Ids of the Apex classes/triggers whose names match the given
+	 * regex. The names are matched against the metadata cache if available;
+	 * the org is queried otherwise
+	 * 
+	 * @param regex - regex that is used to fetch classes from the org
+	 * 
+	 * @param trigger - true to fetch the triggers instead of the classes
+	 * 
+	 * @return Ids of the matching classes/triggers; null if none
+	 */
+	private static String[] fetchApexClassIdsBasedOnRegex(PartnerConnection connection, String namespace,
+			String regex, boolean trigger) {
+		ApexClassMetadataCache metadataCache = ApexClassMetadataCache.getInstance(connection);
+		if (metadataCache == null) {
+			// fire the query using WSC and fetch the results
+			String soql = trigger ? QueryConstructor.generateQueryToFetchApexTriggersBasedOnRegex(namespace, regex)
+					: QueryConstructor.generateQueryToFetchApexClassesBasedOnRegex(namespace, regex);
+			return constructClassIdArrayUsingWSC(connection, soql);
+		}
+		Pattern pattern = ApexClassRegexMatcher.compileLikePattern(QueryConstructor.processRegexForSoqlQueries(regex));
+		ArrayList<String> apexClasses = new ArrayList<String>();
+		for (ApexClassMetadata metadata : trigger ? metadataCache.getApexTriggers() : metadataCache.getApexClasses()) {
+			if (metadata.getNamespacePrefix() == null ? namespace == null : metadata.getNamespacePrefix().equals(
+					namespace)) {
+				if (pattern.matcher(metadata.getName()).matches()) {
+					apexClasses.add(metadata.getId());
+					ClassRegistry.getClassRegistryInstance().putApexClassName(metadata.getId(), metadata.getName());
 				}
-				LOG.info(logDuplicates);
 			}
-
-			return uniqueClassesAsArray;
 		}
-		return classesAsArray;
+		LOG.debug("Matched " + apexClasses.size() + " Apex " + (trigger ? "triggers" : "classes")
+				+ " in the metadata cache with the regex: " + regex);
+		if (apexClasses.isEmpty()) {
+			return null;
+		}
+		return apexClasses.toArray(new String[apexClasses.size()]);
 	}
 
 	/*
@@ -243,21 +354,22 @@ public class ApexClassFetcherUtils {
 	 */
 	public static String[] constructClassIdArrayUsingWSC(PartnerConnection connection, String soql) {
 
-		String[] classIdsAsArray = null;
-		QueryResult queryResult = null;
+		ArrayList<String> apexClasses = new ArrayList<String>();
 		try {
-			queryResult = connection.query(soql);
+			// regexes can match thousands of classes; follow the query locator
+			// till all the classes are fetched
+			QueryPageIterator queryPageIterator = new QueryPageIterator(connection, soql);
+			while (queryPageIterator.hasNextPage()) {
+				fetchApexClasses(queryPageIterator.nextPage(), apexClasses);
+			}
 		} catch (ConnectionException e) {
 			ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler
 					.logConnectionException(e, connection, soql));
 		}
-		if (queryResult != null) {
-			classIdsAsArray = fetchApexClassesAsArray(queryResult);
-		} else {
-			ApexUnitUtils.shutDownWithErrMsg("Faulty query performed using the soql Query " + soql
-					+ " returned incorrect result. Halting the application");
+		if (apexClasses.isEmpty()) {
+			return null;
 		}
-		return classIdsAsArray;
+		return apexClasses.toArray(new String[apexClasses.size()]);
 	}
 
 	/*
@@ -267,28 +379,38 @@ public class ApexClassFetcherUtils {
 	 * soql query
 	 */
 	private static String[] fetchApexClassesAsArray(QueryResult queryResult) {
-		Object[] apexClassesObjArr = null;
 		if (queryResult.getDone()) {
 			SObject[] sObjects = queryResult.getRecords();
 			if (sObjects != null) {
 				ArrayList<String> apexClasses = new ArrayList<String>();
-				LOG.debug("Fetched Apex classes:");
-				for (SObject sobject : sObjects) {
-					apexClasses.add(sobject.getField("Id").toString());
-					// crucial step. Populate apexCLassMap each time a class is
-					// fetched. Will be used for lot of computations
-					apexClassMap.put(sobject.getField("Id").toString(), sobject.getField("Name").toString());
-					LOG.debug("ApexClassId : " + sobject.getField("Id").toString() + "  ApexClassName : "
-							+ sobject.getField("Name").toString());
-				}
-				apexClassesObjArr = apexClasses.toArray();
-				//line below only works for java 1.6 and above
-				return Arrays.copyOf(apexClassesObjArr, apexClassesObjArr.length, String[].class);
+				fetchApexClasses(sObjects, apexClasses);
+				return apexClasses.toArray(new String[apexClasses.size()]);
 			}
 		}
 		return null;
 	}
 
+	/*
+	 * adds the apex class id's from a page of the query result to the given
+	 * list
+	 * 
+	 * @param sObjects - ApexClass/ApexTrigger records fetched by the query
+	 * 
+	 * @param apexClasses - list of apex class id's fetched so far
+	 */
+	private static void fetchApexClasses(SObject[] sObjects, ArrayList<String> apexClasses) {
+		LOG.debug("Fetched Apex classes:");
+		for (SObject sobject : sObjects) {
+			apexClasses.add(sobject.getField("Id").toString());
+			// crucial step. Populate the ClassRegistry each time a class is
+			// fetched. Will be used for lot of computations
+			ClassRegistry.getClassRegistryInstance().putApexClassName(sobject.getField("Id").toString(),
+					sobject.getField("Name").toString());
+			LOG.debug("ApexClassId : " + sobject.getField("Id").toString() + "  ApexClassName : "
+					+ sobject.getField("Name").toString());
+		}
+	}
+
 	/*
 	 * Returns Apex class id based on class name. Helps in validating for
 	 * duplicates and making sure that only deployed class names are used in
@@ -369,6 +491,186 @@ public class ApexClassFetcherUtils {
 		return apexClassInfoMap;
 	}
 
+	/*
+	 * Bulk variant of fetchApexClassInfoFromId. Fetches the Name, ApiVersion
+	 * and LengthWithoutComments of the given Apex classes/triggers using IN
+	 * queries(see QueryConstructor.buildInClauseQueries). The queries against
+	 * the ApexClass and ApexTrigger tables are fired in parallel. Only the
+	 * classes not in the metadata cache are queried
+	 * 
+	 * @param connection - partnerConnection for the app to connect to the org
+	 * using web services
+	 * 
+	 * @param apexClassIds Apex Class/Trigger Ids for which the info is to be
+	 * derived
+	 * 
+	 * @return map with the Apex class/trigger Id as the key and the info
+	 * map(as returned by fetchApexClassInfoFromId) as the value. Ids not found
+	 * in the org are not part of the map
+	 */
+	public static Map<String, HashMap<String, String>> fetchApexClassInfoFromIds(PartnerConnection connection,
+			Collection<String> apexClassIds) {
+		Map<String, HashMap<String, String>> apexClassInfoMaps = new HashMap<String, HashMap<String, String>>();
+		List<String> uniqueApexClassIds = new ArrayList<String>();
+		ApexClassMetadataCache metadataCache = ApexClassMetadataCache.getInstance(connection);
+		for (String apexClassId : new LinkedHashSet<String>(apexClassIds)) {
+			ApexClassMetadata metadata = metadataCache != null ? metadataCache.getById(apexClassId) : null;
+			if (metadata != null) {
+				HashMap<String, String> apexClassInfoMap = new HashMap<String, String>();
+				apexClassInfoMap.put("Name", metadata.getName());
+				apexClassInfoMap.put("ApiVersion", metadata.getApiVersion());
+				apexClassInfoMap.put("LengthWithoutComments", metadata.getLengthWithoutComments());
+				apexClassInfoMaps.put(apexClassId, apexClassInfoMap);
+			} else {
+				uniqueApexClassIds.add(apexClassId);
+			}
+		}
+		if (uniqueApexClassIds.isEmpty()) {
+			return apexClassInfoMaps;
+		}
+		// an Id belongs to either of the tables; query both
+		List<String> queries = new ArrayList<String>(QueryConstructor.getApexClassInfo(uniqueApexClassIds));
+		queries.addAll(QueryConstructor.getApexTriggerInfo(uniqueApexClassIds));
+		LOG.debug("Fetching info of " + uniqueApexClassIds.size() + " Apex classes/triggers using "
+				+ queries.size() + " queries");
+
+		for (SObject sobject : fetchRecordsInParallel(connection, queries)) {
+			HashMap<String, String> apexClassInfoMap = new HashMap<String, String>();
+			apexClassInfoMap.put("Name", sobject.getField("Name").toString());
+			apexClassInfoMap.put("ApiVersion", sobject.getField("ApiVersion").toString());
+			apexClassInfoMap.put("LengthWithoutComments", sobject.getField("LengthWithoutComments").toString());
+			apexClassInfoMaps.put(sobject.getField("Id").toString(), apexClassInfoMap);
+		}
+		LOG.debug("Fetched info of " + apexClassInfoMaps.size() + " Apex classes/triggers");
+		return apexClassInfoMaps;
+	}
+
+	/*
+	 * Resolves the Ids of the Apex classes(and optionally the triggers) with
+	 * the given names. The names are looked up in the metadata cache if
+	 * available. Otherwise they are looked up using IN queries instead of a
+	 * query per name; the classes are looked up first and only the names that
+	 * are not classes are looked up among the triggers
+	 * 
+	 * @param connection - partnerConnection for the app to connect to the org
+	 * using web services
+	 * 
+	 * @param namespace - namespace of the classes; null for the classes
+	 * without a namespace
+	 * 
+	 * @param apexClassNames - names of the Apex classes/triggers
+	 * 
+	 * @param includeTriggers - true if the names that are not Apex classes are
+	 * to be looked up among the triggers
+	 * 
+	 * @return map with the lower cased name(names are case insensitive) as the
+	 * key and the Id as the value. Names not found in the org are not part of
+	 * the map
+	 */
+	public static Map<String, String> fetchApexClassIdsBasedOnNames(PartnerConnection connection, String namespace,
+			Collection<String> apexClassNames, boolean includeTriggers) {
+		Map<String, String> apexClassIds = new HashMap<String, String>();
+		ApexClassMetadataCache metadataCache = ApexClassMetadataCache.getInstance(connection);
+		if (metadataCache != null) {
+			for (String apexClassName : apexClassNames) {
+				ApexClassMetadata metadata = metadataCache.getApexClass(namespace, apexClassName);
+				if (metadata == null && includeTriggers) {
+					metadata = metadataCache.getApexTrigger(namespace, apexClassName);
+				}
+				// the cache covers all the classes of the org; names not in
+				// the cache do not exist in the org
+				if (metadata != null) {
+					apexClassIds.put(apexClassName.toLowerCase(), metadata.getId());
+				}
+			}
+			LOG.debug("Resolved " + apexClassIds.size() + " of " + apexClassNames.size()
+					+ " Apex class names using the metadata cache");
+			return apexClassIds;
+		}
+		Set<String> unresolvedNames = new LinkedHashSet<String>();
+		for (String apexClassName : apexClassNames) {
+			unresolvedNames.add(apexClassName.toLowerCase());
+		}
+		if (unresolvedNames.isEmpty()) {
+			return apexClassIds;
+		}
+		addIdsBasedOnNames(fetchRecordsInParallel(connection,
+				QueryConstructor.generateQueriesToFetchApexClasses(namespace, unresolvedNames)), apexClassIds,
+				unresolvedNames);
+		// triggers are included only for code coverage and not for tests to
+		// avoid exception by the platform
+		if (includeTriggers && !unresolvedNames.isEmpty()) {
+			addIdsBasedOnNames(fetchRecordsInParallel(connection,
+					QueryConstructor.generateQueriesToFetchApexTriggers(namespace, unresolvedNames)), apexClassIds,
+					unresolvedNames);
+		}
+		LOG.debug("Resolved " + apexClassIds.size() + " of " + apexClassNames.size() + " Apex class names");
+		return apexClassIds;
+	}
+
+	private static void addIdsBasedOnNames(List<SObject> sObjects, Map<String, String> apexClassIds,
+			Set<String> unresolvedNames) {
+		for (SObject sobject : sObjects) {
+			String apexClassName = sobject.getField("Name").toString().toLowerCase();
+			if (unresolvedNames.remove(apexClassName)) {
+				apexClassIds.put(apexClassName, sobject.getField("Id").toString());
+			}
+		}
+	}
+
+	/*
+	 * Fires the given queries in parallel(upto MAX_PARALLEL_METADATA_QUERIES
+	 * at a time) and returns the records of all of them
+	 */
+	private static List<SObject> fetchRecordsInParallel(PartnerConnection connection, List<String> queries) {
+		List<SObject> records = new ArrayList<SObject>();
+		if (queries.isEmpty()) {
+			return records;
+		}
+		ExecutorService threadPool = Executors
+				.newFixedThreadPool(Math.min(MAX_PARALLEL_METADATA_QUERIES, queries.size()));
+		try {
+			List<Future<List<SObject>>> futures = new ArrayList<Future<List<SObject>>>();
+			for (String soql : queries) {
+				futures.add(threadPool.submit(createQueryTask(connection, soql)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					records.addAll(futures.get(i).get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof ConnectionException) {
+						ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(
+								(ConnectionException) e.getCause(), connection, queries.get(i)));
+					} else {
+						ApexUnitUtils.shutDownWithDebugLog(e,
+								"Error encountered while querying the Apex classes: " + e.getMessage());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			ApexUnitUtils.shutDownWithDebugLog(e, "Interrupted while querying the Apex classes: " + e.getMessage());
+		} finally {
+			threadPool.shutdown();
+		}
+		return records;
+	}
+
+	/*
+	 * Creates the task that fires the given query and returns all the records
+	 */
+	private static Callable<List<SObject>> createQueryTask(final PartnerConnection connection, final String soql) {
+		return new Callable<List<SObject>>() {
+			public List<SObject> call() throws ConnectionException {
+				List<SObject> records = new ArrayList<SObject>();
+				QueryPageIterator queryPageIterator = new QueryPageIterator(connection, soql);
+				while (queryPageIterator.hasNextPage()) {
+					records.addAll(Arrays.asList(queryPageIterator.nextPage()));
+				}
+				return records;
+			}
+		};
+	}
+
 	/*
 	 * Returns a string map with Apex class Id as the key and corresponding Apex
 	 * class name as the value
@@ -395,8 +697,8 @@ public class ApexClassFetcherUtils {
 				if (sobject != null) {
 					apexClassName = sobject.getField("Name").toString();
 					LOG.info("Fetched the Apex test class for Id: " + apexClassId + " : " + apexClassName);
-					if (!apexClassMap.containsKey(apexClassId)) {
-						apexClassMap.put(apexClassId, apexClassName);
+					if (!ClassRegistry.getClassRegistryInstance().containsApexClass(apexClassId)) {
+						ClassRegistry.getClassRegistryInstance().putApexClassName(apexClassId, apexClassName);
 					}
 				}
 			}
@@ -404,6 +706,49 @@ public class ApexClassFetcherUtils {
 		return apexClassName;
 	}
 
+	/*
+	 * Resolves the names of the given Apex classes that are not yet part of
+	 * the ClassRegistry. The classes not in the metadata cache are fetched
+	 * using IN queries(see QueryConstructor.buildInClauseQueries) fired in
+	 * parallel instead of a query per class
+	 * 
+	 * @param connection - partnerConnection for the app to connect to the org
+	 * using web services
+	 * 
+	 * @param apexClassIds Apex Class Ids for which Apex Class names are to be
+	 * derived
+	 */
+	public static void fetchApexClassNamesFromIds(PartnerConnection connection, Collection<String> apexClassIds) {
+		List<String> unknownApexClassIds = new ArrayList<String>();
+		ApexClassMetadataCache metadataCache = ApexClassMetadataCache.getInstance(connection);
+		for (String apexClassId : new LinkedHashSet<String>(apexClassIds)) {
+			if (apexClassId != null && !ClassRegistry.getClassRegistryInstance().containsApexClass(apexClassId)) {
+				ApexClassMetadata metadata = metadataCache != null ? metadataCache.getById(apexClassId) : null;
+				if (metadata != null) {
+					ClassRegistry.getClassRegistryInstance().putApexClassName(apexClassId, metadata.getName());
+				} else {
+					unknownApexClassIds.add(apexClassId);
+				}
+			}
+		}
+		if (unknownApexClassIds.isEmpty()) {
+			return;
+		}
+		LOG.debug("Fetching the names of " + unknownApexClassIds.size() + " Apex classes");
+		for (SObject sobject : fetchRecordsInParallel(connection,
+				QueryConstructor.generateQueriesToFetchApexClassesFromIds(unknownApexClassIds))) {
+			String apexClassName = sobject.getField("Name").toString();
+			LOG.debug("Fetched the Apex class for Id: " + sobject.getId() + " : " + apexClassName);
+			ClassRegistry.getClassRegistryInstance().putApexClassName(sobject.getField("Id").toString(),
+					apexClassName);
+		}
+		for (String apexClassId : unknownApexClassIds) {
+			if (!ClassRegistry.getClassRegistryInstance().containsApexClass(apexClassId)) {
+				LOG.warn("Unable to find the Apex class for Id: " + apexClassId);
+			}
+		}
+	}
+
 	/*
 	 * Logs Apex Classes fetched from the org
 	 * 
@@ -413,8 +758,9 @@ public class ApexClassFetcherUtils {
 		if (classIds != null && classIds.length > 0) {
 			LOG.debug("Fetched apex classes: ");
 			for (int i = 0; i < classIds.length; i++) {
-				if (apexClassMap.containsKey(classIds[i])) {
-					LOG.debug(apexClassMap.get(classIds[i]));
+				String apexClassName = ClassRegistry.getClassRegistryInstance().getApexClassName(classIds[i]);
+				if (apexClassName != null) {
+					LOG.debug(apexClassName);
 				} else {
 					LOG.debug(classIds[i] + "(Unable to find class name for this id)");
 				}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Metadata of an Apex class or trigger as cached by ApexClassMetadataCache
+ */
+
+package com.sforce.cd.apexUnit.client.utils;
+
+public class ApexClassMetadata {
+	private final String id;
+	private final String name;
+	private final String namespacePrefix;
+	private final String apiVersion;
+	private final String lengthWithoutComments;
+	private final String lastModifiedDate;
+	private final boolean trigger;
+
+	public ApexClassMetadata(String id, String name, String namespacePrefix, String apiVersion,
+			String lengthWithoutComments, String lastModifiedDate, boolean trigger) {
+		this.id = id;
+		this.name = name;
+		this.namespacePrefix = namespacePrefix;
+		this.apiVersion = apiVersion;
+		this.lengthWithoutComments = lengthWithoutComments;
+		this.lastModifiedDate = lastModifiedDate;
+		this.trigger = trigger;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getNamespacePrefix() {
+		return namespacePrefix;
+	}
+
+	public String getApiVersion() {
+		return apiVersion;
+	}
+
+	public String getLengthWithoutComments() {
+		return lengthWithoutComments;
+	}
+
+	public String getLastModifiedDate() {
+		return lastModifiedDate;
+	}
+
+	public boolean isTrigger() {
+		return trigger;
+	}
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * On-disk cache of the metadata of the Apex classes and triggers of an org
+ */
+
+package com.sforce.cd.apexUnit.client.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sforce.cd.apexUnit.arguments.CommandLineArguments;
+import com.sforce.cd.apexUnit.client.QueryConstructor;
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.soap.partner.sobject.SObject;
+import com.sforce.ws.ConnectionException;
+
+/*
+ * ApexClassMetadataCache holds the Id, Name, NamespacePrefix, ApiVersion,
+ * LengthWithoutComments and LastModifiedDate of all the Apex classes and
+ * triggers of the org. The cache is stored in the metadata cache directory
+ * given as command line input, in a file per org.
+ *
+ * On startup the cache is brought up to date by fetching only the classes and
+ * triggers modified since the latest LastModifiedDate in the cache. Since the
+ * cache covers all the classes of the org, a class that is not found in the
+ * cache does not exist in the org; such lookups are answered without querying
+ * the org either. Deleted classes do not show up in the delta; hence the
+ * number of classes and triggers in the org is compared with the cache after
+ * the delta is applied, and the cache is rebuilt from scratch on a mismatch.
+ * New classes show up in the delta, so a deletion is detected even if a class
+ * is added in its place. The cache is rebuilt from scratch once it is older
+ * than MAX_AGE_IN_MILLIS as well.
+ *
+ * The cache is read-only once loaded and can be shared across threads
+ */
+public class ApexClassMetadataCache {
+	private static Logger LOG = LoggerFactory.getLogger(ApexClassMetadataCache.class);
+	private static final long MAX_AGE_IN_MILLIS = 24 * 60 * 60 * 1000L;
+	private static final String FILE_FORMAT_VERSION = "1";
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final String CLASS_RECORD = "C";
+	private static final String TRIGGER_RECORD = "T";
+
+	private static ApexClassMetadataCache metadataCache = null;
+	private static boolean initialized = false;
+
+	private final File cacheFile;
+	private final Map<String, ApexClassMetadata> metadataById = new HashMap<String, ApexClassMetadata>();
+	private final Map<String, ApexClassMetadata> classesByName = new HashMap<String, ApexClassMetadata>();
+	private final Map<String, ApexClassMetadata> triggersByName = new HashMap<String, ApexClassMetadata>();
+	// latest LastModifiedDate of the classes/triggers in the cache
+	private String lastSync = null;
+	// time at which the cache was last built from scratch
+	private long createdAt = 0;
+
+	ApexClassMetadataCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	/*
+	 * Returns the metadata cache of the org, loading and refreshing it on the
+	 * first call
+	 *
+	 * @param connection - partnerConnection for the app to connect to the org
+	 * using web services
+	 *
+	 * @return the metadata cache; null if caching is not enabled or the cache
+	 * could not be loaded
+	 */
+	public static synchronized ApexClassMetadataCache getInstance(PartnerConnection connection) {
+		if (!initialized) {
+			initialized = true;
+			String cacheDir = CommandLineArguments.getMetadataCacheDir();
+			if (cacheDir != null && connection != null) {
+				metadataCache = loadMetadataCache(connection, cacheDir);
+			}
+		}
+		return metadataCache;
+	}
+
+	private static ApexClassMetadataCache loadMetadataCache(PartnerConnection connection, String cacheDir) {
+		try {
+			String orgId = connection.getUserInfo().getOrganizationId();
+			ApexClassMetadataCache cache = new ApexClassMetadataCache(new File(cacheDir, orgId + ".metadata"));
+			cache.refresh(connection);
+			return cache;
+		} catch (ConnectionException e) {
+			// not fatal; the metadata is fetched from the org as and when
+			// needed
+			LOG.warn("Unable to load the metadata cache. Fetching the metadata from the org instead: "
+					+ e.getMessage());
+			LOG.debug("Unable to load the metadata cache", e);
+		}
+		return null;
+	}
+
+	/*
+	 * Reads the cache file and fetches the classes/triggers modified since
+	 * the last sync. The cache is built from scratch if the file is not
+	 * usable or too old, or if classes/triggers were deleted from the org
+	 */
+	private void refresh(PartnerConnection connection) throws ConnectionException {
+		boolean loaded = false;
+		if (cacheFile.isFile()) {
+			try {
+				loaded = readCacheFile();
+			} catch (IOException e) {
+				LOG.warn("Unable to read the metadata cache file " + cacheFile + ": " + e.getMessage());
+			}
+			if (loaded && System.currentTimeMillis() - createdAt > MAX_AGE_IN_MILLIS) {
+				LOG.info("Metadata cache " + cacheFile + " is more than a day old. Rebuilding the cache");
+				loaded = false;
+			}
+		}
+		if (!loaded) {
+			clear();
+			createdAt = System.currentTimeMillis();
+		}
+		String modifiedAfter = loaded ? lastSync : null;
+		int classesFetched = fetchMetadata(connection, QueryConstructor.getApexClassMetadata(modifiedAfter), false);
+		int triggersFetched = fetchMetadata(connection, QueryConstructor.getApexTriggerMetadata(modifiedAfter), true);
+		if (loaded && hasDeletedClasses(connection)) {
+			LOG.info("Apex classes/triggers have been deleted from the org since the last sync. Rebuilding the metadata cache "
+					+ cacheFile);
+			loaded = false;
+			clear();
+			createdAt = System.currentTimeMillis();
+			classesFetched = fetchMetadata(connection, QueryConstructor.getApexClassMetadata(null), false);
+			triggersFetched = fetchMetadata(connection, QueryConstructor.getApexTriggerMetadata(null), true);
+		}
+		LOG.info((loaded ? "Refreshed" : "Built") + " the metadata cache " + cacheFile + " with " + classesFetched
+				+ " Apex classes and " + triggersFetched + " triggers modified in the org. Cache size: "
+				+ metadataById.size());
+		if (!loaded || classesFetched + triggersFetched > 0) {
+			try {
+				writeCacheFile();
+			} catch (IOException e) {
+				LOG.warn("Unable to write the metadata cache file " + cacheFile + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/*
+	 * Compares the number of classes and triggers in the org with the cache.
+	 * The cache holds every class/trigger modified since the last sync, hence
+	 * the counts differ only if some of them were deleted from the org
+	 *
+	 * @return true if the cache holds classes/triggers that no longer exist
+	 * in the org
+	 */
+	private boolean hasDeletedClasses(PartnerConnection connection) throws ConnectionException {
+		int cachedTriggers = triggersByName.size();
+		int cachedClasses = metadataById.size() - cachedTriggers;
+		int orgClasses = connection.query(QueryConstructor.getApexClassCount()).getSize();
+		int orgTriggers = connection.query(QueryConstructor.getApexTriggerCount()).getSize();
+		LOG.debug("Apex classes in the org: " + orgClasses + ", in the metadata cache: " + cachedClasses
+				+ ". Apex triggers in the org: " + orgTriggers + ", in the metadata cache: " + cachedTriggers);
+		return orgClasses != cachedClasses || orgTriggers != cachedTriggers;
+	}
+
+	/*
+	 * @return number of classes/triggers added to or updated in the cache
+	 */
+	private int fetchMetadata(PartnerConnection connection, String soql, boolean trigger) throws ConnectionException {
+		int recordsFetched = 0;
+		QueryPageIterator queryPageIterator = new QueryPageIterator(connection, soql);
+		while (queryPageIterator.hasNextPage()) {
+			for (SObject sobject : queryPageIterator.nextPage()) {
+				ApexClassMetadata metadata = new ApexClassMetadata(getField(sobject, "Id"), getField(sobject, "Name"),
+						getField(sobject, "NamespacePrefix"), getField(sobject, "ApiVersion"), getField(sobject,
+								"LengthWithoutComments"), toSoqlDateTime(getField(sobject, "LastModifiedDate")),
+						trigger);
+				ApexClassMetadata previous = metadataById.get(metadata.getId());
+				// skip the classes fetched again only due to the milliseconds
+				// dropped from the last sync
+				if (previous == null || previous.getLastModifiedDate() == null
+						|| !previous.getLastModifiedDate().equals(metadata.getLastModifiedDate())) {
+					add(metadata);
+					recordsFetched++;
+				}
+			}
+		}
+		return recordsFetched;
+	}
+
+	private static String getField(SObject sobject, String fieldName) {
+		Object value = sobject.getField(fieldName);
+		return value == null || value.toString().equals("") ? null : value.toString();
+	}
+
+	/*
+	 * converts the datetime returned by the org(e.g. 2016-05-12T10:11:12.000Z)
+	 * into a datetime that can be used in soql(e.g. 2016-05-12T10:11:12Z).
+	 * The milliseconds are dropped; classes modified within the same second as
+	 * the last sync are fetched again, which is harmless
+	 */
+	private static String toSoqlDateTime(String dateTime) {
+		if (dateTime != null && dateTime.length() > 19) {
+			return dateTime.substring(0, 19) + "Z";
+		}
+		return dateTime;
+	}
+
+	void add(ApexClassMetadata metadata) {
+		ApexClassMetadata previous = metadataById.put(metadata.getId(), metadata);
+		Map<String, ApexClassMetadata> metadataByName = metadata.isTrigger() ? triggersByName : classesByName;
+		if (previous != null) {
+			// the class may have been renamed
+			metadataByName.remove(nameKey(previous.getNamespacePrefix(), previous.getName()));
+		}
+		metadataByName.put(nameKey(metadata.getNamespacePrefix(), metadata.getName()), metadata);
+		if (metadata.getLastModifiedDate() != null
+				&& (lastSync == null || metadata.getLastModifiedDate().compareTo(lastSync) > 0)) {
+			lastSync = metadata.getLastModifiedDate();
+		}
+	}
+
+	private void clear() {
+		metadataById.clear();
+		classesByName.clear();
+		triggersByName.clear();
+		lastSync = null;
+	}
+
+	/*
+	 * names are case insensitive in the org
+	 */
+	private static String nameKey(String namespacePrefix, String name) {
+		String key = name.toLowerCase();
+		if (namespacePrefix != null) {
+			key = namespacePrefix.toLowerCase() + "__" + key;
+		}
+		return key;
+	}
+
+	/*
+	 * @return true if the cache file is of the current format and was read
+	 * completely
+	 */
+	boolean readCacheFile() throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+		try {
+			String[] header = splitLine(reader.readLine());
+			if (header == null || header.length != 3 || !FILE_FORMAT_VERSION.equals(header[0])) {
+				LOG.info("Ignoring the metadata cache file " + cacheFile + " of an unknown format");
+				return false;
+			}
+			createdAt = Long.parseLong(header[1]);
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = splitLine(line);
+				if (fields.length != 7) {
+					LOG.info("Ignoring the corrupt metadata cache file " + cacheFile);
+					return false;
+				}
+				add(new ApexClassMetadata(fields[1], fields[2], emptyToNull(fields[3]), emptyToNull(fields[4]),
+						emptyToNull(fields[5]), emptyToNull(fields[6]), TRIGGER_RECORD.equals(fields[0])));
+			}
+			lastSync = emptyToNull(header[2]) == null ? lastSync : header[2];
+			LOG.debug("Read " + metadataById.size() + " Apex classes/triggers from the metadata cache " + cacheFile);
+			return true;
+		} catch (NumberFormatException e) {
+			LOG.info("Ignoring the corrupt metadata cache file " + cacheFile);
+			return false;
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
+
+	/*
+	 * writes the cache into a temporary file first and then replaces the cache
+	 * file, so that an interrupted run never leaves a partial cache behind
+	 */
+	void writeCacheFile() throws IOException {
+		File cacheDir = cacheFile.getParentFile();
+		if (cacheDir != null && !cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+			throw new IOException("Unable to create the directory " + cacheDir);
+		}
+		File tempFile = new File(cacheDir, cacheFile.getName() + ".tmp");
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+		try {
+			writeLine(writer, FILE_FORMAT_VERSION, String.valueOf(createdAt), lastSync);
+			for (ApexClassMetadata metadata : metadataById.values()) {
+				writeLine(writer, metadata.isTrigger() ? TRIGGER_RECORD : CLASS_RECORD, metadata.getId(),
+						metadata.getName(), metadata.getNamespacePrefix(), metadata.getApiVersion(),
+						metadata.getLengthWithoutComments(), metadata.getLastModifiedDate());
+			}
+		} finally {
+			writer.close();
+		}
+		if (cacheFile.exists() && !cacheFile.delete()) {
+			throw new IOException("Unable to replace the file " + cacheFile);
+		}
+		if (!tempFile.renameTo(cacheFile)) {
+			throw new IOException("Unable to rename " + tempFile + " to " + cacheFile);
+		}
+		LOG.debug("Wrote " + metadataById.size() + " Apex classes/triggers to the metadata cache " + cacheFile);
+	}
+
+	private static void writeLine(BufferedWriter writer, String... fields) throws IOException {
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				writer.write(FIELD_SEPARATOR);
+			}
+			writer.write(fields[i] == null ? "" : fields[i]);
+		}
+		writer.newLine();
+	}
+
+	private static String[] splitLine(String line) {
+		// -1 retains the trailing empty fields
+		return line == null ? null : line.split(FIELD_SEPARATOR, -1);
+	}
+
+	private static String emptyToNull(String value) {
+		return value == null || value.equals("") ? null : value;
+	}
+
+	/*
+	 * @param id - Id of the Apex class/trigger
+	 *
+	 * @return metadata of the class/trigger; null if it does not exist in the
+	 * org
+	 */
+	public ApexClassMetadata getById(String id) {
+		return metadataById.get(id);
+	}
+
+	/*
+	 * @param namespacePrefix - namespace of the class; null for the classes
+	 * without a namespace
+	 *
+	 * @param name - name of the Apex class(case insensitive)
+	 *
+	 * @return metadata of the class; null if it does not exist in the org
+	 */
+	public ApexClassMetadata getApexClass(String namespacePrefix, String name) {
+		return classesByName.get(nameKey(namespacePrefix, name));
+	}
+
+	/*
+	 * @param namespacePrefix - namespace of the trigger; null for the triggers
+	 * without a namespace
+	 *
+	 * @param name - name of the Apex trigger(case insensitive)
+	 *
+	 * @return metadata of the trigger; null if it does not exist in the org
+	 */
+	public ApexClassMetadata getApexTrigger(String namespacePrefix, String name) {
+		return triggersByName.get(nameKey(namespacePrefix, name));
+	}
+
+	/*
+	 * @return metadata of all the Apex classes in the org
+	 */
+	public Collection<ApexClassMetadata> getApexClasses() {
+		return Collections.unmodifiableCollection(classesByName.values());
+	}
+
+	/*
+	 * @return metadata of all the Apex triggers in the org
+	 */
+	public Collection<ApexClassMetadata> getApexTriggers() {
+		return Collections.unmodifiableCollection(triggersByName.values());
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Matches the names of the Apex classes/triggers in the org against regexes locally
+ */
+
+package com.sforce.cd.apexUnit.client.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sforce.cd.apexUnit.ApexUnitUtils;
+import com.sforce.cd.apexUnit.client.QueryConstructor;
+import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.soap.partner.sobject.SObject;
+import com.sforce.ws.ConnectionException;
+
+/*
+ * ApexClassRegexMatcher evaluates java regexes against the catalog(Id and
+ * Name) of the Apex classes and triggers of the org. The catalog is taken from
+ * the metadata cache if available, else it is fetched from the org once per
+ * run. Hence the classes are resolved with a single query per table no matter
+ * how many regexes are given.
+ *
+ * A name is selected if it fully matches any of the include regexes and none
+ * of the exclude regexes. Large catalogs are split into chunks that are
+ * matched in parallel
+ */
+public class ApexClassRegexMatcher {
+	private static Logger LOG = LoggerFactory.getLogger(ApexClassRegexMatcher.class);
+	// catalogs smaller than this are matched on the calling thread
+	private static final int MIN_NAMES_PER_THREAD = 1000;
+	private static final int MAX_MATCHING_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/*
+	 * Returns the Ids of the Apex classes(and optionally the triggers) without
+	 * a namespace whose names match the given regexes
+	 *
+	 * @param connection - partnerConnection for the app to connect to the org
+	 * using web services
+	 *
+	 * @param regexes - comma separated java regexes for the names to be
+	 * included
+	 *
+	 * @param excludeRegexes - comma separated java regexes for the names to be
+	 * excluded; null if none
+	 *
+	 * @param includeTriggers - true to match the triggers as well
+	 *
+	 * @return Ids of the matching classes/triggers; null if none
+	 */
+	public static String[] fetchApexClassIdsMatchingRegexes(PartnerConnection connection, String regexes,
+			String excludeRegexes, boolean includeTriggers) {
+		List<Pattern> includePatterns = compileRegexes(regexes, false);
+		List<Pattern> excludePatterns = compileRegexes(excludeRegexes, false);
+		List<ApexClassMetadata> matches = match(getCatalog(connection, false), includePatterns, excludePatterns);
+		if (includeTriggers) {
+			matches.addAll(match(getCatalog(connection, true), includePatterns, excludePatterns));
+		}
+		LOG.info("Regex(es): " + regexes + (excludeRegexes != null ? " excluding " + excludeRegexes : "")
+				+ " matched " + matches.size() + " Apex classes");
+		if (matches.isEmpty()) {
+			return null;
+		}
+		String[] apexClassIds = new String[matches.size()];
+		Map<String, String> apexClassNames = new HashMap<String, String>();
+		for (int i = 0; i < matches.size(); i++) {
+			apexClassIds[i] = matches.get(i).getId();
+			apexClassNames.put(matches.get(i).getId(), matches.get(i).getName());
+		}
+		ClassRegistry.getClassRegistryInstance().putApexClassNames(apexClassNames);
+		return apexClassIds;
+	}
+
+	/*
+	 * Compiles the given comma separated regexes
+	 *
+	 * @param regexes - comma separated regexes; null if none
+	 *
+	 * @param soqlLike - true if the regexes follow the syntax of the regexes
+	 * used for the LIKE queries(see QueryConstructor) instead of java regexes
+	 *
+	 * @return compiled patterns
+	 */
+	public static List<Pattern> compileRegexes(String regexes, boolean soqlLike) {
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		if (regexes == null) {
+			return patterns;
+		}
+		for (String regex : regexes.split(",")) {
+			if (regex.trim().equals("")) {
+				continue;
+			}
+			try {
+				patterns.add(soqlLike ? compileLikePattern(QueryConstructor.processRegexForSoqlQueries(regex))
+						: Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
+			} catch (PatternSyntaxException e) {
+				ApexUnitUtils.shutDownWithErrMsg("Invalid regex: " + regex + ". " + e.getMessage());
+			}
+		}
+		return patterns;
+	}
+
+	/*
+	 * converts the pattern of a soql LIKE expression into the equivalent case
+	 * insensitive java pattern. % matches any number of characters and _
+	 * matches a single character
+	 */
+	public static Pattern compileLikePattern(String likePattern) {
+		StringBuilder regex = new StringBuilder();
+		for (char character : likePattern.toCharArray()) {
+			if (character == '%') {
+				regex.append(".*");
+			} else if (character == '_') {
+				regex.append('.');
+			} else {
+				regex.append(Pattern.quote(String.valueOf(character)));
+			}
+		}
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	}
+
+	/*
+	 * @return true if the name matches any of the include patterns and none
+	 * of the exclude patterns
+	 */
+	public static boolean matches(String name, List<Pattern> includePatterns, List<Pattern> excludePatterns) {
+		return matchesAny(name, includePatterns) && !matchesAny(name, excludePatterns);
+	}
+
+	/*
+	 * @return true if the name matches any of the given patterns
+	 */
+	public static boolean matchesAny(String name, List<Pattern> patterns) {
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(name).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Matches the names in the catalog against the given patterns, splitting
+	 * large catalogs across threads
+	 *
+	 * @return classes/triggers selected by the patterns in the order of the
+	 * catalog
+	 */
+	public static List<ApexClassMetadata> match(Collection<ApexClassMetadata> catalog,
+			final List<Pattern> includePatterns, final List<Pattern> excludePatterns) {
+		final List<ApexClassMetadata> catalogAsList = new ArrayList<ApexClassMetadata>(catalog);
+		int threads = Math.min(MAX_MATCHING_THREADS, catalogAsList.size() / MIN_NAMES_PER_THREAD);
+		if (threads <= 1) {
+			return match(catalogAsList, includePatterns, excludePatterns, 0, catalogAsList.size());
+		}
+		List<ApexClassMetadata> matches = new ArrayList<ApexClassMetadata>();
+		int namesPerThread = (catalogAsList.size() + threads - 1) / threads;
+		ExecutorService threadPool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<ApexClassMetadata>>> futures = new ArrayList<Future<List<ApexClassMetadata>>>();
+			for (int fromIndex = 0; fromIndex < catalogAsList.size(); fromIndex += namesPerThread) {
+				final int from = fromIndex;
+				final int to = Math.min(fromIndex + namesPerThread, catalogAsList.size());
+				futures.add(threadPool.submit(new Callable<List<ApexClassMetadata>>() {
+					public List<ApexClassMetadata> call() {
+						return match(catalogAsList, includePatterns, excludePatterns, from, to);
+					}
+				}));
+			}
+			for (Future<List<ApexClassMetadata>> future : futures) {
+				matches.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			ApexUnitUtils.shutDownWithDebugLog(e, "Interrupted while matching the regexes: " + e.getMessage());
+		} catch (ExecutionException e) {
+			ApexUnitUtils.shutDownWithDebugLog(e, "Error encountered while matching the regexes: " + e.getMessage());
+		} finally {
+			threadPool.shutdown();
+		}
+		return matches;
+	}
+
+	private static List<ApexClassMetadata> match(List<ApexClassMetadata> catalog, List<Pattern> includePatterns,
+			List<Pattern> excludePatterns, int fromIndex, int toIndex) {
+		List<ApexClassMetadata> matches = new ArrayList<ApexClassMetadata>();
+		for (int i = fromIndex; i < toIndex; i++) {
+			ApexClassMetadata metadata = catalog.get(i);
+			if (metadata.getNamespacePrefix() == null
+					&& matches(metadata.getName(), includePatterns, excludePatterns)) {
+				matches.add(metadata);
+			}
+		}
+		return matches;
+	}
+
+	/*
+	 * @return catalog of the Apex classes or triggers of the org
+	 */
+	private static synchronized Collection<ApexClassMetadata> getCatalog(PartnerConnection connection,
+			boolean trigger) {
+		ApexClassMetadataCache metadataCache = ApexClassMetadataCache.getInstance(connection);
+		if (metadataCache != null) {
+			return trigger ? metadataCache.getApexTriggers() : metadataCache.getApexClasses();
+		}
+		// catalogs fetched from the org are kept in the registry of the run
+		List<ApexClassMetadata> catalog = ClassRegistry.getClassRegistryInstance().getCatalog(trigger);
+		if (catalog == null) {
+			catalog = new ArrayList<ApexClassMetadata>();
+			String soql = trigger ? QueryConstructor.generateQueryToFetchApexTriggerCatalog(null) : QueryConstructor
+					.generateQueryToFetchApexClassCatalog(null);
+			try {
+				QueryPageIterator queryPageIterator = new QueryPageIterator(connection, soql);
+				while (queryPageIterator.hasNextPage()) {
+					for (SObject sobject : queryPageIterator.nextPage()) {
+						catalog.add(new ApexClassMetadata(sobject.getField("Id").toString(), sobject.getField("Name")
+								.toString(), null, null, null, null, trigger));
+					}
+				}
+			} catch (ConnectionException e) {
+				ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(e, connection, soql));
+			}
+			LOG.debug("Fetched the catalog of " + catalog.size() + " Apex " + (trigger ? "triggers" : "classes"));
+			ClassRegistry.getClassRegistryInstance().putCatalog(trigger, catalog);
+		}
+		return catalog;
+	}
+}
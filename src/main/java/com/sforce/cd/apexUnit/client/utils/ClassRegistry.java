@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Registry of the Apex classes resolved during a run of ApexUnit
+ */
+
+package com.sforce.cd.apexUnit.client.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * ClassRegistry holds the Apex classes/triggers resolved during the run:
+ * - the name of each class/trigger Id
+ * - the duplicate class entries across the manifest files and regexes
+ * - the class names in the manifest files that do not exist in the org
+ * - the catalogs(Id and Name) of the Apex classes and triggers fetched from
+ * the org when there is no metadata cache
+ *
+ * The registry is safe to use from multiple threads, so that the classes can
+ * be resolved and the results can be processed in parallel. The class names
+ * are interned within the registry; the same name resolved by many threads is
+ * held only once
+ */
+public class ClassRegistry {
+	private static ClassRegistry classRegistry = null;
+
+	private final ConcurrentMap<String, String> apexClassNames = new ConcurrentHashMap<String, String>();
+	private final ConcurrentMap<String, String> duplicateApexClassNames = new ConcurrentHashMap<String, String>();
+	// in the order of the manifest files
+	private final Set<String> nonExistantApexClassEntries = new LinkedHashSet<String>();
+	private final ConcurrentMap<String, String> internedNames = new ConcurrentHashMap<String, String>();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	// keyed by whether the catalog is that of the triggers
+	private final ConcurrentMap<Boolean, List<ApexClassMetadata>> catalogs = new ConcurrentHashMap<Boolean, List<ApexClassMetadata>>();
+
+	private ClassRegistry() {
+	}
+
+	// singleton pattern.. the registry is shared across the run
+	public static synchronized ClassRegistry getClassRegistryInstance() {
+		if (classRegistry == null) {
+			classRegistry = new ClassRegistry();
+		}
+		return classRegistry;
+	}
+
+	/*
+	 * Discards the registry of the run, so that the next call to
+	 * getClassRegistryInstance starts with an empty registry
+	 */
+	static synchronized void reset() {
+		classRegistry = null;
+	}
+
+	private String intern(String name) {
+		String internedName = internedNames.putIfAbsent(name, name);
+		return internedName != null ? internedName : name;
+	}
+
+	/*
+	 * @param apexClassId - Id of the Apex class/trigger
+	 *
+	 * @param apexClassName - name of the Apex class/trigger
+	 */
+	public void putApexClassName(String apexClassId, String apexClassName) {
+		if (apexClassId != null && apexClassName != null) {
+			apexClassNames.put(apexClassId, intern(apexClassName));
+		}
+	}
+
+	/*
+	 * Bulk variant of putApexClassName
+	 *
+	 * @param apexClassNamesById - map with the Apex class/trigger Id as the key
+	 * and the name as the value
+	 */
+	public void putApexClassNames(Map<String, String> apexClassNamesById) {
+		for (Map.Entry<String, String> apexClass : apexClassNamesById.entrySet()) {
+			putApexClassName(apexClass.getKey(), apexClass.getValue());
+		}
+	}
+
+	/*
+	 * @return name of the Apex class/trigger; null if the class is not
+	 * resolved yet
+	 */
+	public String getApexClassName(String apexClassId) {
+		String apexClassName = apexClassId != null ? apexClassNames.get(apexClassId) : null;
+		(apexClassName != null ? hitCount : missCount).incrementAndGet();
+		return apexClassName;
+	}
+
+	/*
+	 * Bulk variant of getApexClassName
+	 *
+	 * @return map with the Apex class/trigger Id as the key and the name as
+	 * the value. Classes not resolved yet are not part of the map
+	 */
+	public Map<String, String> getApexClassNames(Collection<String> apexClassIds) {
+		Map<String, String> apexClassNamesById = new HashMap<String, String>();
+		for (String apexClassId : apexClassIds) {
+			String apexClassName = getApexClassName(apexClassId);
+			if (apexClassName != null) {
+				apexClassNamesById.put(apexClassId, apexClassName);
+			}
+		}
+		return apexClassNamesById;
+	}
+
+	/*
+	 * @return true if the name of the Apex class/trigger is resolved
+	 */
+	public boolean containsApexClass(String apexClassId) {
+		return apexClassId != null && apexClassNames.containsKey(apexClassId);
+	}
+
+	public int getApexClassCount() {
+		return apexClassNames.size();
+	}
+
+	public void putDuplicateApexClass(String apexClassId, String apexClassName) {
+		if (apexClassId != null && apexClassName != null) {
+			duplicateApexClassNames.put(apexClassId, intern(apexClassName));
+		}
+	}
+
+	/*
+	 * @return names of the duplicate class entries across the manifest files
+	 * and regexes
+	 */
+	public List<String> getDuplicateApexClassNames() {
+		return new ArrayList<String>(duplicateApexClassNames.values());
+	}
+
+	public synchronized void addNonExistantApexClassEntry(String apexClassName) {
+		nonExistantApexClassEntries.add(intern(apexClassName));
+	}
+
+	/*
+	 * @return class names in the manifest files that do not exist in the org
+	 */
+	public synchronized List<String> getNonExistantApexClassEntries() {
+		return new ArrayList<String>(nonExistantApexClassEntries);
+	}
+
+	/*
+	 * @param trigger - true for the catalog of the triggers
+	 *
+	 * @return catalog of the Apex classes/triggers of the org; null if it is
+	 * not fetched yet
+	 */
+	public List<ApexClassMetadata> getCatalog(boolean trigger) {
+		return catalogs.get(trigger);
+	}
+
+	/*
+	 * @param trigger - true for the catalog of the triggers
+	 *
+	 * @param catalog - Apex classes/triggers of the org
+	 */
+	public void putCatalog(boolean trigger, List<ApexClassMetadata> catalog) {
+		catalogs.put(trigger, Collections.unmodifiableList(catalog));
+	}
+
+	/*
+	 * @return number of lookups that found the name of the class
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/*
+	 * @return number of lookups for the classes that are not resolved
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public String getStats() {
+		return "classes: " + getApexClassCount() + ", lookups: " + getHitCount() + " hits/" + getMissCount()
+				+ " misses";
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Iterator over the pages(batches of records) returned by a soql query fired using the partner connection
+ */
+
+package com.sforce.cd.apexUnit.client.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.soap.partner.sobject.SObject;
+import com.sforce.ws.ConnectionException;
+
+/*
+ * query() returns the first batch of records only. The remaining records have
+ * to be fetched batch by batch using queryMore() with the query locator of the
+ * previous batch. The size of a batch is governed by the QueryOptions header of
+ * the connection(see ConnectionHandler).
+ *
+ * QueryPageIterator fetches a page only when it is asked for, so that the
+ * records can be processed page by page without holding the complete result
+ * of the query in memory
+ */
+public class QueryPageIterator {
+
+	private static Logger LOG = LoggerFactory.getLogger(QueryPageIterator.class);
+
+	private final PartnerConnection connection;
+	private final String soql;
+	private QueryResult currentPage = null;
+	private int pagesFetched = 0;
+
+	/*
+	 * Callback that consumes the records of the query one page at a time
+	 */
+	public interface PageHandler {
+		void handlePage(SObject[] records);
+	}
+
+	public QueryPageIterator(PartnerConnection connection, String soql) {
+		this.connection = connection;
+		this.soql = soql;
+	}
+
+	/*
+	 * @return true if the query is yet to be fired or more records are
+	 * available at the org
+	 */
+	public boolean hasNextPage() {
+		return currentPage == null || !currentPage.isDone();
+	}
+
+	/*
+	 * Fires the query(first page) or queryMore(subsequent pages) and returns
+	 * the records of the page. Never returns null
+	 */
+	public SObject[] nextPage() throws ConnectionException {
+		if (!hasNextPage()) {
+			return new SObject[0];
+		}
+		if (currentPage == null) {
+			LOG.debug(soql);
+			currentPage = connection.query(soql);
+		} else {
+			currentPage = connection.queryMore(currentPage.getQueryLocator());
+		}
+		pagesFetched++;
+		SObject[] records = currentPage.getRecords();
+		if (pagesFetched > 1) {
+			LOG.debug("Fetched page " + pagesFetched + " with " + (records == null ? 0 : records.length)
+					+ " records(total " + currentPage.getSize() + ") for the query: " + soql);
+		}
+		return records == null ? new SObject[0] : records;
+	}
+
+	/*
+	 * Total number of records matching the query. Available once the first
+	 * page is fetched
+	 */
+	public int getTotalSize() {
+		return currentPage == null ? 0 : currentPage.getSize();
+	}
+
+	/*
+	 * Fires the query and hands over all the records to the given handler
+	 * page by page
+	 *
+	 * @param connection - partnerConnection for the app to connect to the org
+	 * using web services
+	 *
+	 * @param soql - the query string
+	 *
+	 * @param pageHandler - consumer of the records
+	 *
+	 * @return number of records handed over to the page handler
+	 */
+	public static int forEachPage(PartnerConnection connection, String soql, PageHandler pageHandler)
+			throws ConnectionException {
+		int recordCount = 0;
+		QueryPageIterator queryPageIterator = new QueryPageIterator(connection, soql);
+		while (queryPageIterator.hasNextPage()) {
+			SObject[] records = queryPageIterator.nextPage();
+			if (records.length > 0) {
+				pageHandler.handlePage(records);
+				recordCount += records.length;
+			}
+		}
+		return recordCount;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Selects the test classes impacted by the Apex classes changed since the last run
+ */
+
+package com.sforce.cd.apexUnit.client.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sforce.cd.apexUnit.ApexUnitUtils;
+import com.sforce.cd.apexUnit.arguments.CommandLineArguments;
+import com.sforce.cd.apexUnit.client.QueryConstructor;
+import com.sforce.cd.apexUnit.client.codeCoverage.TestCoverageIndex;
+import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.soap.partner.sobject.SObject;
+import com.sforce.ws.ConnectionException;
+
+/*
+ * TestImpactAnalyzer narrows down the test classes selected using the
+ * manifest files/regexes to the ones impacted by the changed Apex classes.
+ * A test class is impacted if it covers any of the changed classes as per the
+ * test coverage index(see TestCoverageIndex) written by the previous run, or
+ * if it has changed itself.
+ *
+ * The changed classes are either given by the user or detected using the
+ * LastModifiedDate of the classes/triggers in the org since the index was
+ * written. All the selected test classes are run if the index is
+ * missing/stale, if no change is detected, or if a changed class is not part
+ * of the index(e.g. a new class) since the tests covering it are unknown
+ */
+public class TestImpactAnalyzer {
+	private static Logger LOG = LoggerFactory.getLogger(TestImpactAnalyzer.class);
+	// the index file is written using the local clock while LastModifiedDate
+	// is set by the org; changes within this margin are considered as well
+	private static final long CLOCK_SKEW_MARGIN_IN_MILLIS = 15 * 60 * 1000L;
+
+	/*
+	 * @param connection - partnerConnection for the app to connect to the org
+	 * using web services
+	 *
+	 * @param testClassIds - Ids of the test classes selected using the
+	 * manifest files/regexes
+	 *
+	 * @return Ids of the impacted test classes; testClassIds if all of them
+	 * are to be run
+	 */
+	public static String[] selectImpactedTestClasses(PartnerConnection connection, String[] testClassIds) {
+		File indexFile = new File(CommandLineArguments.getTestCoverageIndexFile());
+		if (!indexFile.isFile()) {
+			LOG.info("Running all the test classes: test coverage index " + indexFile.getAbsolutePath()
+					+ " is not built yet");
+			return testClassIds;
+		}
+		long indexAgeInMillis = System.currentTimeMillis() - indexFile.lastModified();
+		if (indexAgeInMillis > CommandLineArguments.getMaxTestCoverageIndexAge() * 60 * 60 * 1000L) {
+			LOG.info("Running all the test classes: test coverage index " + indexFile.getAbsolutePath()
+					+ " is older than " + CommandLineArguments.getMaxTestCoverageIndexAge() + " hours");
+			return testClassIds;
+		}
+		Collection<String> changedClassIds = null;
+		if (CommandLineArguments.getChangedClasses() != null) {
+			changedClassIds = fetchChangedClassIds(connection, CommandLineArguments.getChangedClasses());
+		} else {
+			changedClassIds = fetchClassIdsModifiedAfter(connection, indexFile.lastModified()
+					- CLOCK_SKEW_MARGIN_IN_MILLIS);
+		}
+		TestCoverageIndex testCoverageIndex = null;
+		try {
+			testCoverageIndex = TestCoverageIndex.open(indexFile);
+		} catch (IOException e) {
+			LOG.warn("Running all the test classes: unable to read the test coverage index "
+					+ indexFile.getAbsolutePath() + ": " + e.getMessage());
+			return testClassIds;
+		}
+		String[] impactedTestClassIds = selectImpactedTestClasses(testClassIds, changedClassIds, testCoverageIndex);
+		if (impactedTestClassIds == null) {
+			return testClassIds;
+		}
+		LOG.info("Running " + impactedTestClassIds.length + " out of " + testClassIds.length
+				+ " test classes impacted by " + changedClassIds.size() + " changed Apex classes");
+		return impactedTestClassIds;
+	}
+
+	/*
+	 * @param testClassIds - Ids of the test classes selected using the
+	 * manifest files/regexes
+	 *
+	 * @param changedClassIds - Ids of the changed classes/triggers
+	 *
+	 * @param testCoverageIndex - index of the code coverage by each test
+	 *
+	 * @return Ids of the impacted test classes in the order of testClassIds;
+	 * null if all the test classes are to be run
+	 */
+	public static String[] selectImpactedTestClasses(String[] testClassIds, Collection<String> changedClassIds,
+			TestCoverageIndex testCoverageIndex) {
+		if (changedClassIds.isEmpty()) {
+			LOG.info("Running all the test classes: no changed Apex classes found");
+			return null;
+		}
+		Set<String> selectedTestClassIds = new HashSet<String>(Arrays.asList(testClassIds));
+		Set<String> impactedTestClassIds = new HashSet<String>();
+		for (String changedClassId : changedClassIds) {
+			if (selectedTestClassIds.contains(changedClassId)) {
+				impactedTestClassIds.add(changedClassId);
+				continue;
+			}
+			Set<String> coveringTestClassIds = testCoverageIndex.getTestClassIdsCoveringClass(changedClassId);
+			if (coveringTestClassIds.isEmpty()) {
+				if (!testCoverageIndex.getClassesCoveredByTest(changedClassId, null).isEmpty()) {
+					// a test class that is not selected to run
+					continue;
+				}
+				String changedClassName = ClassRegistry.getClassRegistryInstance().getApexClassName(changedClassId);
+				LOG.info("Running all the test classes: changed Apex class "
+						+ (changedClassName != null ? changedClassName + "(" + changedClassId + ")" : changedClassId)
+						+ " is not covered by the test coverage index");
+				return null;
+			}
+			impactedTestClassIds.addAll(coveringTestClassIds);
+		}
+		List<String> impactedTestClasses = new ArrayList<String>();
+		for (String testClassId : testClassIds) {
+			if (impactedTestClassIds.contains(testClassId)) {
+				impactedTestClasses.add(testClassId);
+			}
+		}
+		if (impactedTestClasses.isEmpty()) {
+			LOG.info("Running all the test classes: none of the selected test classes cover the changed Apex classes");
+			return null;
+		}
+		return impactedTestClasses.toArray(new String[impactedTestClasses.size()]);
+	}
+
+	/*
+	 * @param changedClasses - comma separated names of the changed
+	 * classes/triggers
+	 *
+	 * @return Ids of the changed classes/triggers. Names not found in the
+	 * org(e.g. deleted classes) are skipped
+	 */
+	private static Collection<String> fetchChangedClassIds(PartnerConnection connection, String changedClasses) {
+		List<String> changedClassNames = new ArrayList<String>();
+		for (String changedClassName : changedClasses.split(",")) {
+			if (!changedClassName.trim().equals("")) {
+				changedClassNames.add(changedClassName.trim());
+			}
+		}
+		Map<String, String> changedClassIds = ApexClassFetcherUtils.fetchApexClassIdsBasedOnNames(connection, null,
+				changedClassNames, true);
+		for (String changedClassName : changedClassNames) {
+			String changedClassId = changedClassIds.get(changedClassName.toLowerCase());
+			if (changedClassId == null) {
+				LOG.info("Changed Apex class " + changedClassName + " not found in the org; skipping it");
+			} else {
+				ClassRegistry.getClassRegistryInstance().putApexClassName(changedClassId, changedClassName);
+			}
+		}
+		return new LinkedHashSet<String>(changedClassIds.values());
+	}
+
+	/*
+	 * @return Ids of the classes/triggers modified after the given time
+	 */
+	private static Collection<String> fetchClassIdsModifiedAfter(PartnerConnection connection, long modifiedAfter) {
+		SimpleDateFormat soqlDateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		soqlDateTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String modifiedAfterAsSoqlDateTime = soqlDateTimeFormat.format(new Date(modifiedAfter));
+		LOG.debug("Fetching the Apex classes modified after " + modifiedAfterAsSoqlDateTime);
+		Set<String> changedClassIds = new LinkedHashSet<String>();
+		ApexClassMetadataCache metadataCache = ApexClassMetadataCache.getInstance(connection);
+		if (metadataCache != null) {
+			// the cache is synced with the org when it is loaded
+			List<ApexClassMetadata> catalog = new ArrayList<ApexClassMetadata>(metadataCache.getApexClasses());
+			catalog.addAll(metadataCache.getApexTriggers());
+			for (ApexClassMetadata metadata : catalog) {
+				if (metadata.getLastModifiedDate() != null
+						&& metadata.getLastModifiedDate().compareTo(modifiedAfterAsSoqlDateTime) > 0) {
+					changedClassIds.add(metadata.getId());
+					ClassRegistry.getClassRegistryInstance().putApexClassName(metadata.getId(), metadata.getName());
+				}
+			}
+			return changedClassIds;
+		}
+		for (boolean trigger : new boolean[] { false, true }) {
+			String soql = QueryConstructor.generateQueryToFetchApexClassesModifiedAfter(modifiedAfterAsSoqlDateTime,
+					trigger);
+			try {
+				QueryPageIterator queryPageIterator = new QueryPageIterator(connection, soql);
+				while (queryPageIterator.hasNextPage()) {
+					for (SObject sobject : queryPageIterator.nextPage()) {
+						String id = sobject.getField("Id").toString();
+						changedClassIds.add(id);
+						ClassRegistry.getClassRegistryInstance().putApexClassName(id,
+								sobject.getField("Name").toString());
+					}
+				}
+			} catch (ConnectionException e) {
+				ApexUnitUtils.shutDownWithDebugLog(e, ConnectionHandler.logConnectionException(e, connection, soql));
+			}
+		}
+		return changedClassIds;
+	}
+}
@@ -14,8 +14,6 @@
 
 package com.sforce.cd.apexUnit.report;
 
-import java.util.List;
-
 public class ApexClassCodeCoverageBean implements Comparable<ApexClassCodeCoverageBean> {
 
 	private String apexTestClassID;
@@ -23,26 +21,37 @@ public class ApexClassCodeCoverageBean implements Comparable<ApexClassCodeCovera
 	private String apexClassName;
 	private int numLinesCovered = 0;
 	private int numLinesUncovered = 0;
+	// computed whenever the line counts change rather than on every
+	// comparison while sorting
+	private double coveragePercentage = 100.0;
 	private ApexMethodCodeCoverageBean[] testMethodNames;
 	private String apiVersion;
 	private String lengthWithoutComments;
-	private List<Long> coveredLinesList;
-	private List<Long> uncoveredLinesList;
+	// line numbers are kept as bitmaps; a class can have thousands of lines
+	private LineCoverage lineCoverage;
 
-	public List<Long> getCoveredLinesList() {
-		return coveredLinesList;
+	public LineCoverage getLineCoverage() {
+		return lineCoverage;
 	}
 
-	public void setCoveredLinesList(List<Long> coveredLinesList) {
-		this.coveredLinesList = coveredLinesList;
+	public void setLineCoverage(LineCoverage lineCoverage) {
+		this.lineCoverage = lineCoverage;
 	}
 
-	public List<Long> getUncoveredLinesList() {
-		return uncoveredLinesList;
+	/*
+	 * @return line numbers of the covered lines; null if the line coverage is
+	 * not available
+	 */
+	public int[] getCoveredLines() {
+		return lineCoverage != null ? lineCoverage.getCoveredLines() : null;
 	}
 
-	public void setUncoveredLinesList(List<Long> uncoveredLinesList) {
-		this.uncoveredLinesList = uncoveredLinesList;
+	/*
+	 * @return line numbers of the uncovered lines; null if the line coverage
+	 * is not available
+	 */
+	public int[] getUncoveredLines() {
+		return lineCoverage != null ? lineCoverage.getUncoveredLines() : null;
 	}
 
 	public String getApexTestClassID() {
@@ -75,6 +84,7 @@ public class ApexClassCodeCoverageBean implements Comparable<ApexClassCodeCovera
 
 	public void setNumLinesCovered(int numLinesCovered) {
 		this.numLinesCovered = numLinesCovered;
+		this.coveragePercentage = LineCoverage.computeCoveragePercentage(numLinesCovered, numLinesUncovered);
 	}
 
 	public int getNumLinesUncovered() {
@@ -83,6 +93,7 @@ public class ApexClassCodeCoverageBean implements Comparable<ApexClassCodeCovera
 
 	public void setNumLinesUncovered(int numLinesUncovered) {
 		this.numLinesUncovered = numLinesUncovered;
+		this.coveragePercentage = LineCoverage.computeCoveragePercentage(numLinesCovered, numLinesUncovered);
 	}
 
 	public ApexMethodCodeCoverageBean[] getTestMethodNames() {
@@ -110,12 +121,7 @@ public class ApexClassCodeCoverageBean implements Comparable<ApexClassCodeCovera
 	}
 
 	public double getCoveragePercentage() {
-		double totalLines = numLinesCovered + numLinesUncovered;
-		if (totalLines > 0) {
-			return (numLinesCovered / (totalLines)) * 100.0;
-		} else {
-			return 100.0;
-		}
+		return coveragePercentage;
 	}
 
 	/*
@@ -126,12 +132,6 @@ public class ApexClassCodeCoverageBean implements Comparable<ApexClassCodeCovera
 	 * @see java.lang.Comparable#compareTo(java.lang.Object)
 	 */
 	public int compareTo(ApexClassCodeCoverageBean codeCoverageBean) {
-		if (this.getCoveragePercentage() < codeCoverageBean.getCoveragePercentage()) {
-			return -1;
-		} else if (this.getCoveragePercentage() > codeCoverageBean.getCoveragePercentage()) {
-			return 1;
-		} else {
-			return 0;
-		}
+		return Double.compare(coveragePercentage, codeCoverageBean.coveragePercentage);
 	}
 }
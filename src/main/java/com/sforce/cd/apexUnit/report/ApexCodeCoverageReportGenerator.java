@@ -23,9 +23,8 @@ import java.util.List;
 
 import com.sforce.cd.apexUnit.ApexUnitUtils;
 import com.sforce.cd.apexUnit.arguments.CommandLineArguments;
-import com.sforce.cd.apexUnit.client.fileReader.ApexManifestFileReader;
 import com.sforce.cd.apexUnit.client.testEngine.TestStatusPollerAndResultHandler;
-import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
+import com.sforce.cd.apexUnit.client.utils.ClassRegistry;
 
 public class ApexCodeCoverageReportGenerator {
 
@@ -163,9 +162,9 @@ public class ApexCodeCoverageReportGenerator {
 				appendDataCell(codeCoverageHTMLContent, codeCoverageStyle,
 						"" + apexClassCodeCoverageBean.getNumLinesUncovered());
 				appendDataCell(codeCoverageHTMLContent, codeCoverageStyle,
-						populateListInAStringBuffer(apexClassCodeCoverageBean.getCoveredLinesList()));
+						populateLinesInAString(apexClassCodeCoverageBean.getLineCoverage(), true));
 				appendDataCell(codeCoverageHTMLContent, codeCoverageStyle,
-						populateListInAStringBuffer(apexClassCodeCoverageBean.getUncoveredLinesList()));
+						populateLinesInAString(apexClassCodeCoverageBean.getLineCoverage(), false));
 				appendDataCell(codeCoverageHTMLContent, codeCoverageStyle,
 						apexClassCodeCoverageBean.getLengthWithoutComments());
 				appendTag(codeCoverageHTMLContent, "tr", "");
@@ -177,14 +176,14 @@ public class ApexCodeCoverageReportGenerator {
 		htmlBuilder.append("</table>");
 
 		// list out the duplicate entries(if any)
-		if (ApexClassFetcherUtils.duplicateApexClassMap != null
-				&& ApexClassFetcherUtils.duplicateApexClassMap.size() > 0) {
+		List<String> duplicateApexClassNames = ClassRegistry.getClassRegistryInstance().getDuplicateApexClassNames();
+		if (duplicateApexClassNames.size() > 0) {
 			StringBuilder duplicateApexClassesHTMLContent = new StringBuilder();
 			appendLineSpaces(duplicateApexClassesHTMLContent, 2);
 			duplicateApexClassesHTMLContent.append("<table border='1'>");
 			appendHeaderCell(duplicateApexClassesHTMLContent, "",
 					"Duplicate Apex Class Names Across Manifest Files And Regular Expressions");
-			for (String duplicateEntry : ApexClassFetcherUtils.duplicateApexClassMap.values()) {
+			for (String duplicateEntry : duplicateApexClassNames) {
 				appendTag(duplicateApexClassesHTMLContent, "tr", "");
 				appendDataCell(duplicateApexClassesHTMLContent, "", duplicateEntry);
 			}
@@ -193,14 +192,15 @@ public class ApexCodeCoverageReportGenerator {
 		}
 
 		// list out the non existant class entries(if any)
-		if (ApexManifestFileReader.nonExistantApexClassEntries != null
-				&& ApexManifestFileReader.nonExistantApexClassEntries.size() > 0) {
+		List<String> nonExistantApexClassEntries = ClassRegistry.getClassRegistryInstance()
+				.getNonExistantApexClassEntries();
+		if (nonExistantApexClassEntries.size() > 0) {
 			StringBuilder nonExistantApexClassesHTMLContent = new StringBuilder();
 			appendLineSpaces(nonExistantApexClassesHTMLContent, 2);
 			nonExistantApexClassesHTMLContent.append("<table border='1'>");
 			appendHeaderCell(nonExistantApexClassesHTMLContent, "",
 					"Invalid/Non-existant Apex Class Names Across Manifest Files And Regular Expressions");
-			for (String invalidEntry : ApexManifestFileReader.nonExistantApexClassEntries) {
+			for (String invalidEntry : nonExistantApexClassEntries) {
 				appendTag(nonExistantApexClassesHTMLContent, "tr", "");
 				appendDataCell(nonExistantApexClassesHTMLContent, "", invalidEntry);
 			}
@@ -245,20 +245,13 @@ public class ApexCodeCoverageReportGenerator {
 		}
 	}
 
-	private static String populateListInAStringBuffer(List<Long> listWithValues) {
-		StringBuffer processedListAsStrBuf = new StringBuffer("");
-		int i = 0;
-		if (listWithValues != null) {
-			for (Long value : listWithValues) {
-				i++;
-				processedListAsStrBuf.append(value);
-				processedListAsStrBuf.append(",");
-				if (i >= 10) {
-					processedListAsStrBuf.append("\n");
-					i = 0;
-				}
-			}
-			return processedListAsStrBuf.substring(0, processedListAsStrBuf.length() - 1);
+	private static String populateLinesInAString(LineCoverage lineCoverage, boolean covered) {
+		StringBuilder processedLines = new StringBuilder();
+		if (lineCoverage != null) {
+			lineCoverage.appendLines(processedLines, covered, 10);
+		}
+		if (processedLines.length() > 0) {
+			return processedLines.substring(0, processedLines.length() - 1);
 		} else {
 			return "-";
 		}
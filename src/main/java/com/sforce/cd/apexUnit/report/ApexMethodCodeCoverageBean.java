@@ -18,6 +18,10 @@ public class ApexMethodCodeCoverageBean {
 	private int unCoveredLines = 0;
 	private String apexTestClassID;
 	private String apexClassorTriggerId;
+	private String testMethodName;
+	// lines of the class/trigger covered by the test method; null if not
+	// fetched
+	private LineCoverage lineCoverage;
 
 	public int getCoveredLines() {
 		return coveredLines;
@@ -51,4 +55,20 @@ public class ApexMethodCodeCoverageBean {
 		this.apexClassorTriggerId = apexClassorTriggerId;
 	}
 
+	public String getTestMethodName() {
+		return testMethodName;
+	}
+
+	public void setTestMethodName(String testMethodName) {
+		this.testMethodName = testMethodName;
+	}
+
+	public LineCoverage getLineCoverage() {
+		return lineCoverage;
+	}
+
+	public void setLineCoverage(LineCoverage lineCoverage) {
+		this.lineCoverage = lineCoverage;
+	}
+
 }
@@ -15,7 +15,8 @@ package com.sforce.cd.apexUnit.report;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jdom.Document;
 import org.jdom.Element;
@@ -26,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import com.sforce.cd.apexUnit.ApexUnitUtils;
 import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
 import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
+import com.sforce.cd.apexUnit.client.utils.ClassRegistry;
 import com.sforce.soap.partner.PartnerConnection;
 
 public class ApexUnitTestReportGenerator {
@@ -50,6 +52,8 @@ public class ApexUnitTestReportGenerator {
 			int testCount = 0;
 			Long totalTimeInMillis = 0L;
 
+			fetchMissingApexClassNames(reportBeans);
+
 			for (ApexReportBean reportBean : reportBeans) {
 				testCount++;
 
@@ -60,18 +64,14 @@ public class ApexUnitTestReportGenerator {
 				if (reportBean.getApexClassName() == null || reportBean.getApexClassName().equals("")) {
 
 					if (reportBean.getApexClassId() != null
-							&& ApexClassFetcherUtils.apexClassMap.get(reportBean.getApexClassId()) != null) {
-						apexClassName = ApexClassFetcherUtils.apexClassMap.get(reportBean.getApexClassId());
+							&& ClassRegistry.getClassRegistryInstance().getApexClassName(reportBean.getApexClassId()) != null) {
+						apexClassName = ClassRegistry.getClassRegistryInstance().getApexClassName(reportBean.getApexClassId());
 					} else if (reportBean.getApexClassId() != null) {
-						PartnerConnection conn = ConnectionHandler.getConnectionHandlerInstance().getConnection();
-						HashMap<String, String> apexClassInfoMap = ApexClassFetcherUtils.fetchApexClassInfoFromId(conn,
-								reportBean.getApexClassId());
-						apexClassName = apexClassInfoMap.get("Name");
+						LOG.debug("Unable to find the Apex class for Id: " + reportBean.getApexClassId());
 					} else {
 						LOG.debug(
 								"Report bean not constructed properly. 'null' class ID associated with the report bean");
 					}
-					// By now apexClassName will be populated
 					reportBean.setApexClassName(apexClassName);
 				} else {
 					apexClassName = reportBean.getApexClassName();
@@ -122,4 +122,24 @@ public class ApexUnitTestReportGenerator {
 		}
 	}
 
+	/*
+	 * Resolves the names of the Apex classes of the report beans without a
+	 * class name into the ClassRegistry, using a single call instead of a
+	 * query per report bean
+	 */
+	private static void fetchMissingApexClassNames(ApexReportBean[] reportBeans) {
+		List<String> apexClassIds = new ArrayList<String>();
+		for (ApexReportBean reportBean : reportBeans) {
+			if ((reportBean.getApexClassName() == null || reportBean.getApexClassName().equals(""))
+					&& reportBean.getApexClassId() != null
+					&& !ClassRegistry.getClassRegistryInstance().containsApexClass(reportBean.getApexClassId())) {
+				apexClassIds.add(reportBean.getApexClassId());
+			}
+		}
+		if (!apexClassIds.isEmpty()) {
+			PartnerConnection conn = ConnectionHandler.getConnectionHandlerInstance().getConnection();
+			ApexClassFetcherUtils.fetchApexClassNamesFromIds(conn, apexClassIds);
+		}
+	}
+
 }
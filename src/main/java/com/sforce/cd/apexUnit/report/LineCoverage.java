@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+/*
+ * Compact representation of the covered and uncovered lines of an Apex class/trigger
+ */
+
+package com.sforce.cd.apexUnit.report;
+
+import java.util.BitSet;
+
+/*
+ * LineCoverage keeps the line numbers as bitmaps(one bit per line) and
+ * computes the line counts and the coverage percentage once when it is
+ * created. Instances are immutable; union, intersect and diff return new
+ * instances.
+ *
+ * A line is either covered or uncovered. Lines that are covered in either of
+ * the operands of union are covered in the result; the coverable lines of the
+ * result are the coverable lines of both the operands
+ */
+public class LineCoverage {
+	private final BitSet coveredLines;
+	private final BitSet uncoveredLines;
+	private final int numLinesCovered;
+	private final int numLinesUncovered;
+	private final double coveragePercentage;
+
+	/*
+	 * @param coveredLines - line numbers of the covered lines; null if none
+	 *
+	 * @param uncoveredLines - line numbers of the uncovered lines; null if
+	 * none
+	 */
+	public LineCoverage(int[] coveredLines, int[] uncoveredLines) {
+		this(toBitSet(coveredLines), toBitSet(uncoveredLines));
+	}
+
+	private LineCoverage(BitSet coveredLines, BitSet uncoveredLines) {
+		// covered lines take precedence over uncovered lines
+		uncoveredLines.andNot(coveredLines);
+		this.coveredLines = coveredLines;
+		this.uncoveredLines = uncoveredLines;
+		this.numLinesCovered = coveredLines.cardinality();
+		this.numLinesUncovered = uncoveredLines.cardinality();
+		this.coveragePercentage = computeCoveragePercentage(numLinesCovered, numLinesUncovered);
+	}
+
+	/*
+	 * @return coverage percentage for the given line counts; 100 if there are
+	 * no lines to cover
+	 */
+	public static double computeCoveragePercentage(int numLinesCovered, int numLinesUncovered) {
+		double totalLines = numLinesCovered + numLinesUncovered;
+		if (totalLines > 0) {
+			return (numLinesCovered / (totalLines)) * 100.0;
+		} else {
+			return 100.0;
+		}
+	}
+
+	private static BitSet toBitSet(int[] lines) {
+		BitSet bitSet = new BitSet();
+		if (lines != null) {
+			for (int line : lines) {
+				if (line >= 0) {
+					bitSet.set(line);
+				}
+			}
+		}
+		return bitSet;
+	}
+
+	private static int[] toArray(BitSet bitSet, int size) {
+		int[] lines = new int[size];
+		int i = 0;
+		for (int line = bitSet.nextSetBit(0); line >= 0; line = bitSet.nextSetBit(line + 1)) {
+			lines[i++] = line;
+		}
+		return lines;
+	}
+
+	private BitSet getCoverableLines() {
+		BitSet coverableLines = (BitSet) coveredLines.clone();
+		coverableLines.or(uncoveredLines);
+		return coverableLines;
+	}
+
+	/*
+	 * @return coverage where a line is covered if it is covered in this or
+	 * the other coverage
+	 */
+	public LineCoverage union(LineCoverage other) {
+		BitSet covered = (BitSet) coveredLines.clone();
+		covered.or(other.coveredLines);
+		BitSet uncovered = getCoverableLines();
+		uncovered.or(other.uncoveredLines);
+		return new LineCoverage(covered, uncovered);
+	}
+
+	/*
+	 * @return coverage where a line is covered if it is covered in both this
+	 * and the other coverage
+	 */
+	public LineCoverage intersect(LineCoverage other) {
+		BitSet covered = (BitSet) coveredLines.clone();
+		covered.and(other.coveredLines);
+		BitSet uncovered = getCoverableLines();
+		uncovered.or(other.getCoverableLines());
+		return new LineCoverage(covered, uncovered);
+	}
+
+	/*
+	 * @return coverage where a line is covered if it is covered in this but
+	 * not in the other coverage; i.e. the lines only this coverage accounts
+	 * for
+	 */
+	public LineCoverage diff(LineCoverage other) {
+		BitSet covered = (BitSet) coveredLines.clone();
+		covered.andNot(other.coveredLines);
+		BitSet uncovered = getCoverableLines();
+		uncovered.or(other.getCoverableLines());
+		return new LineCoverage(covered, uncovered);
+	}
+
+	public boolean isCovered(int line) {
+		return line >= 0 && coveredLines.get(line);
+	}
+
+	public int getNumLinesCovered() {
+		return numLinesCovered;
+	}
+
+	public int getNumLinesUncovered() {
+		return numLinesUncovered;
+	}
+
+	public double getCoveragePercentage() {
+		return coveragePercentage;
+	}
+
+	/*
+	 * @return line numbers of the covered lines in ascending order
+	 */
+	public int[] getCoveredLines() {
+		return toArray(coveredLines, numLinesCovered);
+	}
+
+	/*
+	 * @return line numbers of the uncovered lines in ascending order
+	 */
+	public int[] getUncoveredLines() {
+		return toArray(uncoveredLines, numLinesUncovered);
+	}
+
+	/*
+	 * Appends the covered or uncovered line numbers to the given builder
+	 * without materializing them as an array
+	 *
+	 * @param linesPerRow - number of line numbers after which a new line is
+	 * started
+	 */
+	public void appendLines(StringBuilder builder, boolean covered, int linesPerRow) {
+		BitSet lines = covered ? coveredLines : uncoveredLines;
+		int i = 0;
+		for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+			builder.append(line).append(',');
+			if (++i >= linesPerRow) {
+				builder.append('\n');
+				i = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+import com.sforce.cd.apexUnit.client.codeCoverage.AdaptiveConcurrencyLimiter;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+	@Test
+	public void limitGrowsWhileLatenciesStayFlat() throws InterruptedException {
+		AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(2, 1, 4);
+		for (int i = 0; i < 20; i++) {
+			concurrencyLimiter.acquire();
+			concurrencyLimiter.onSuccess(100);
+		}
+		Assert.assertEquals(4, concurrencyLimiter.getLimit());
+		Assert.assertEquals(0, concurrencyLimiter.getInFlight());
+	}
+
+	@Test
+	public void limitIsHalvedWhenTheOrgIsOverloaded() throws InterruptedException {
+		AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(8, 1, 16);
+		concurrencyLimiter.acquire();
+		concurrencyLimiter.onFailure(true);
+		Assert.assertEquals(4, concurrencyLimiter.getLimit());
+		// failures other than overload leave the limit as is
+		concurrencyLimiter.acquire();
+		concurrencyLimiter.onFailure(false);
+		Assert.assertEquals(4, concurrencyLimiter.getLimit());
+	}
+
+	@Test
+	public void limitIsHalvedOnLatencySpike() throws InterruptedException {
+		AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(8, 1, 8);
+		concurrencyLimiter.acquire();
+		concurrencyLimiter.onSuccess(100);
+		concurrencyLimiter.acquire();
+		concurrencyLimiter.onSuccess(1000);
+		Assert.assertEquals(4, concurrencyLimiter.getLimit());
+	}
+
+	@Test
+	public void limitNeverDropsBelowTheMinimum() throws InterruptedException {
+		AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(2, 1, 8);
+		for (int i = 0; i < 5; i++) {
+			concurrencyLimiter.acquire();
+			concurrencyLimiter.onFailure(true);
+		}
+		Assert.assertEquals(1, concurrencyLimiter.getLimit());
+	}
+}
@@ -24,6 +24,7 @@ import com.sforce.cd.apexUnit.arguments.CommandLineArguments;
 import com.sforce.cd.apexUnit.arguments.CommandLineArgumentsTest;
 import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
 import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
+import com.sforce.cd.apexUnit.client.utils.ClassRegistry;
 import com.sforce.soap.partner.PartnerConnection;
 
 @Ignore
@@ -45,7 +46,7 @@ public class ApexClassFetcherUtilsTest {
 	public void constructTestClassesArrayTest() {
 		String[] testClasses = ApexClassFetcherUtils.constructTestClassesArray(conn);
 		if (testClasses != null) {
-			Assert.assertTrue(testClasses.length > 0 || ApexClassFetcherUtils.apexClassMap.size() > 0);
+			Assert.assertTrue(testClasses.length > 0 || ClassRegistry.getClassRegistryInstance().getApexClassCount() > 0);
 		}
 	}
 
@@ -53,9 +54,9 @@ public class ApexClassFetcherUtilsTest {
 	public void fetchApexClassesFromManifestFilesTest() {
 		String[] testClasses = ApexClassFetcherUtils
 				.fetchApexClassesFromManifestFiles(CommandLineArguments.getTestManifestFiles(), true);
-		if (testClasses != null && ApexClassFetcherUtils.apexClassMap != null
-				&& ApexClassFetcherUtils.apexClassMap.size() != testClasses.length) {
-			Assert.assertTrue(testClasses.length > 0 || ApexClassFetcherUtils.apexClassMap.size() > 0);
+		if (testClasses != null && ClassRegistry.getClassRegistryInstance().getApexClassCount() > 0
+				&& ClassRegistry.getClassRegistryInstance().getApexClassCount() != testClasses.length) {
+			Assert.assertTrue(testClasses.length > 0 || ClassRegistry.getClassRegistryInstance().getApexClassCount() > 0);
 		}
 	}
 
@@ -64,7 +65,7 @@ public class ApexClassFetcherUtilsTest {
 		String[] testClasses = ApexClassFetcherUtils.fetchApexClassesBasedOnMultipleRegexes(conn, null,
 				CommandLineArguments.getTestRegex(), true);
 		if (testClasses != null) {
-			Assert.assertTrue(testClasses.length > 0 || ApexClassFetcherUtils.apexClassMap.size() > 0);
+			Assert.assertTrue(testClasses.length > 0 || ClassRegistry.getClassRegistryInstance().getApexClassCount() > 0);
 		}
 	}
 
@@ -74,7 +75,7 @@ public class ApexClassFetcherUtilsTest {
 		String[] testClasses = ApexClassFetcherUtils.constructClassIdArrayUsingWSC(conn, soql);
 		logFilteredTestClasses(testClasses);
 		if (testClasses != null) {
-			Assert.assertTrue(testClasses.length > 0 || ApexClassFetcherUtils.apexClassMap.size() > 0);
+			Assert.assertTrue(testClasses.length > 0 || ClassRegistry.getClassRegistryInstance().getApexClassCount() > 0);
 		}
 	}
 
@@ -87,11 +88,11 @@ public class ApexClassFetcherUtilsTest {
 		// limit the result to 1 . Thats all we need to test the method
 		// fetchApexClassIdFromName
 		soql += " limit 1";
-		// the below call populates ApexClassFetcher.apexClassMap
+		// the below call populates the ClassRegistry
 		String[] testClasses = ApexClassFetcherUtils.constructClassIdArrayUsingWSC(conn, soql);
-		if (testClasses != null && ApexClassFetcherUtils.apexClassMap != null) {
+		if (testClasses != null && ClassRegistry.getClassRegistryInstance().getApexClassCount() > 0) {
 			for (String testClass : testClasses) {
-				className = ApexClassFetcherUtils.apexClassMap.get(testClass);
+				className = ClassRegistry.getClassRegistryInstance().getApexClassName(testClass);
 				expectedTestClassId = testClass;
 			}
 		}
@@ -109,11 +110,11 @@ public class ApexClassFetcherUtilsTest {
 		// limit the result to 1 . Thats all we need to test the method
 		// fetchApexClassIdFromName
 		soql += " limit 1";
-		// the below call populates ApexClassFetcher.apexClassMap
+		// the below call populates the ClassRegistry
 		String[] testClasses = ApexClassFetcherUtils.constructClassIdArrayUsingWSC(conn, soql);
-		if (testClasses != null && ApexClassFetcherUtils.apexClassMap != null) {
+		if (testClasses != null && ClassRegistry.getClassRegistryInstance().getApexClassCount() > 0) {
 			for (String testClassId : testClasses) {
-				expectedClassName = ApexClassFetcherUtils.apexClassMap.get(testClassId);
+				expectedClassName = ClassRegistry.getClassRegistryInstance().getApexClassName(testClassId);
 				classId = testClassId;
 			}
 		}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+import com.sforce.cd.apexUnit.client.utils.ApexClassMetadata;
+import com.sforce.cd.apexUnit.client.utils.ApexClassRegexMatcher;
+
+public class ApexClassRegexMatcherTest {
+
+	@Test
+	public void javaRegexesWithExclusions() {
+		List<ApexClassMetadata> catalog = new ArrayList<ApexClassMetadata>();
+		catalog.add(createClass("1", "My_Apex_controller_Test", null));
+		catalog.add(createClass("2", "My_Apex_Slow_Test", null));
+		catalog.add(createClass("3", "Other_Test", null));
+		catalog.add(createClass("4", "my_apex_builder_test", null));
+		catalog.add(createClass("5", "My_Apex_namespaced_Test", "ns"));
+
+		List<ApexClassMetadata> matches = ApexClassRegexMatcher.match(catalog,
+				ApexClassRegexMatcher.compileRegexes("My_Apex_.*_Test,Unknown\\d+", false),
+				ApexClassRegexMatcher.compileRegexes("My_Apex_Slow.*", false));
+		Assert.assertEquals(2, matches.size());
+		Assert.assertEquals("1", matches.get(0).getId());
+		Assert.assertEquals("4", matches.get(1).getId());
+	}
+
+	@Test
+	public void largeCatalogsAreMatchedInParallelInOrder() {
+		List<ApexClassMetadata> catalog = new ArrayList<ApexClassMetadata>();
+		for (int i = 0; i < 20000; i++) {
+			catalog.add(createClass(String.valueOf(i), (i % 2 == 0 ? "Even_" : "Odd_") + i, null));
+		}
+		List<ApexClassMetadata> matches = ApexClassRegexMatcher.match(catalog,
+				ApexClassRegexMatcher.compileRegexes("Even_\\d+", false), new ArrayList<Pattern>());
+		Assert.assertEquals(10000, matches.size());
+		for (int i = 0; i < matches.size(); i++) {
+			Assert.assertEquals(String.valueOf(i * 2), matches.get(i).getId());
+		}
+	}
+
+	@Test
+	public void soqlLikeRegexes() {
+		List<Pattern> patterns = ApexClassRegexMatcher.compileRegexes("My_Apex_*_Test,Prefix", true);
+		Assert.assertTrue(ApexClassRegexMatcher.matchesAny("my_apex_validator_test", patterns));
+		Assert.assertTrue(ApexClassRegexMatcher.matchesAny("PrefixedClass", patterns));
+		Assert.assertFalse(ApexClassRegexMatcher.matchesAny("My_Apex_validator", patterns));
+		// regex meta characters have no special meaning in LIKE expressions
+		Assert.assertFalse(ApexClassRegexMatcher.matchesAny("a",
+				ApexClassRegexMatcher.compileRegexes("[a]*", true)));
+	}
+
+	private ApexClassMetadata createClass(String id, String name, String namespacePrefix) {
+		return new ApexClassMetadata(id, name, namespacePrefix, null, null, null, false);
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+import com.sforce.cd.apexUnit.client.codeCoverage.ApexCodeCoverageAggregateDecoder;
+import com.sforce.cd.apexUnit.client.codeCoverage.ToolingQueryPage;
+import com.sforce.cd.apexUnit.report.ApexClassCodeCoverageBean;
+
+public class ApexCodeCoverageAggregateDecoderTest {
+
+	private static final String RESPONSE = "{\"size\":2,\"totalSize\":3,\"done\":false,"
+			+ "\"queryLocator\":\"0r8xx3C7JmtNAHi-1\",\"entityTypeName\":\"ApexCodeCoverageAggregate\","
+			+ "\"nextRecordsUrl\":\"/services/data/v36.0/tooling/query/0r8xx3C7JmtNAHi-1\",\"records\":["
+			+ "{\"attributes\":{\"type\":\"ApexCodeCoverageAggregate\",\"url\":\"/services/data/v36.0/tooling/sobjects/ApexCodeCoverageAggregate/715x\"},"
+			+ "\"ApexClassOrTriggerId\":\"01p000000000001\",\"NumLinesCovered\":3,\"NumLinesUncovered\":2,"
+			+ "\"Coverage\":{\"coveredLines\":[1,2,5],\"uncoveredLines\":[7,9],\"namespace\":null}},"
+			+ "{\"attributes\":{\"type\":\"ApexCodeCoverageAggregate\"},"
+			+ "\"ApexClassOrTriggerId\":\"01q000000000002\",\"NumLinesCovered\":null,\"NumLinesUncovered\":4,"
+			+ "\"Coverage\":null}]}";
+
+	@Test
+	public void decodeCodeCoveragePage() throws IOException {
+		ToolingQueryPage<ApexClassCodeCoverageBean> page = new ApexCodeCoverageAggregateDecoder()
+				.decode(new StringReader(RESPONSE));
+		Assert.assertFalse(page.isDone());
+		Assert.assertEquals(3, page.getTotalSize());
+		Assert.assertEquals("/services/data/v36.0/tooling/query/0r8xx3C7JmtNAHi-1", page.getNextRecordsUrl());
+		Assert.assertEquals(2, page.getRecords().size());
+
+		ApexClassCodeCoverageBean classCoverage = page.getRecords().get(0);
+		Assert.assertEquals("01p000000000001", classCoverage.getApexClassorTriggerId());
+		Assert.assertEquals(3, classCoverage.getNumLinesCovered());
+		Assert.assertEquals(2, classCoverage.getNumLinesUncovered());
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 2, 5 }, classCoverage.getCoveredLines()));
+		Assert.assertTrue(Arrays.equals(new int[] { 7, 9 }, classCoverage.getUncoveredLines()));
+
+		ApexClassCodeCoverageBean triggerCoverage = page.getRecords().get(1);
+		Assert.assertEquals("01q000000000002", triggerCoverage.getApexClassorTriggerId());
+		Assert.assertEquals(0, triggerCoverage.getNumLinesCovered());
+		Assert.assertEquals(4, triggerCoverage.getNumLinesUncovered());
+		Assert.assertNull(triggerCoverage.getCoveredLines());
+	}
+}
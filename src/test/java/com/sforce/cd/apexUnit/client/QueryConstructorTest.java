@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+public class QueryConstructorTest {
+
+	private static final String QUERY_PREFIX = "SELECT Id FROM ApexClass WHERE Id IN ";
+	private static final String QUERY_SUFFIX = " AND NamespacePrefix = null";
+
+	@Test
+	public void valuesAreSplitAcrossQueriesWithinTheLengthLimit() {
+		List<String> ids = createIds(500);
+		List<String> queries = QueryConstructor.buildInClauseQueries(QUERY_PREFIX, ids, QUERY_SUFFIX, 2000, false);
+		Assert.assertTrue(queries.size() > 1);
+		int valuesInQueries = 0;
+		for (String query : queries) {
+			Assert.assertTrue(query.length() <= 2000);
+			Assert.assertTrue(query.startsWith(QUERY_PREFIX + "('"));
+			Assert.assertTrue(query.endsWith("')" + QUERY_SUFFIX));
+			valuesInQueries += query.split(",").length;
+		}
+		Assert.assertEquals(ids.size(), valuesInQueries);
+		Assert.assertTrue(queries.get(0).contains("'01p000000000000000'"));
+		Assert.assertTrue(queries.get(queries.size() - 1).contains("'01p000000000000499'"));
+	}
+
+	@Test
+	public void urlEncodedLengthIsUsedForTheQueriesFiredAsPartOfTheUrl() throws UnsupportedEncodingException {
+		List<String> ids = createIds(500);
+		List<String> queries = QueryConstructor.buildInClauseQueries(QUERY_PREFIX, ids, "", 2000, true);
+		Assert.assertTrue(queries.size() > QueryConstructor.buildInClauseQueries(QUERY_PREFIX, ids, "", 2000, false)
+				.size());
+		for (String query : queries) {
+			Assert.assertTrue(URLEncoder.encode(query, "UTF-8").length() <= 2000);
+		}
+	}
+
+	@Test
+	public void fewValuesFitInASingleQuery() {
+		List<String> queries = QueryConstructor.buildInClauseQueries(QUERY_PREFIX, createIds(2), QUERY_SUFFIX,
+				QueryConstructor.MAX_SOQL_LENGTH, false);
+		Assert.assertEquals(1, queries.size());
+		Assert.assertEquals(QUERY_PREFIX + "('01p000000000000000','01p000000000000001')" + QUERY_SUFFIX,
+				queries.get(0));
+	}
+
+	@Test
+	public void noQueriesForNoValues() {
+		Assert.assertTrue(QueryConstructor.buildInClauseQueries(QUERY_PREFIX, Collections.<String> emptyList(),
+				QUERY_SUFFIX, QueryConstructor.MAX_SOQL_LENGTH, false).isEmpty());
+		Assert.assertTrue(QueryConstructor.getAggregatedCodeCoverage(null).isEmpty());
+	}
+
+	@Test
+	public void lineCountQueriesDoNotSelectTheLineNumbers() {
+		List<String> ids = createIds(500);
+		List<String> countQueries = QueryConstructor.getAggregatedCodeCoverageCounts(ids);
+		for (String query : countQueries) {
+			Assert.assertFalse(query.contains("Coverage FROM"));
+			Assert.assertTrue(query.contains("NumLinesCovered"));
+		}
+		Assert.assertTrue(countQueries.size() <= QueryConstructor.getAggregatedCodeCoverage(ids).size());
+	}
+
+	@Test
+	public void queueItemQueriesForLargeSubmissionsAreChunked() {
+		// queue items of 10 bulk jobs of 200 test classes each
+		List<String> ids = createIds(2000);
+		List<String> queries = QueryConstructor.fetchParentJobIdsForApexTestQueueItems(ids);
+		Assert.assertTrue(queries.size() > 1);
+		for (String query : queries) {
+			Assert.assertTrue(query.length() <= QueryConstructor.MAX_SOQL_LENGTH);
+		}
+		List<String> statusQueries = QueryConstructor.getTestExecutionStatus(ids, "2016-05-12T10:11:12.000Z");
+		Assert.assertEquals(queries.size(), statusQueries.size());
+		for (String query : statusQueries) {
+			Assert.assertTrue(query.length() <= QueryConstructor.MAX_SOQL_LENGTH);
+			Assert.assertTrue(query.endsWith(" AND SystemModstamp >= 2016-05-12T10:11:12Z Order By Id"));
+		}
+	}
+
+	private List<String> createIds(int count) {
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			ids.add(String.format("01p%015d", i));
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+import com.sforce.cd.apexUnit.client.codeCoverage.ApexCodeCoverageDecoder;
+import com.sforce.cd.apexUnit.client.codeCoverage.TestCoverageIndex;
+import com.sforce.cd.apexUnit.report.ApexMethodCodeCoverageBean;
+
+public class TestCoverageIndexTest {
+
+	private static final String RESPONSE = "{\"size\":4,\"totalSize\":4,\"done\":true,\"records\":["
+			+ createRecord("01pTest1", "testA", "01pClass1", "[1,2]", "[3]")
+			+ "," + createRecord("01pTest1", "testB", "01pClass1", "[3]", "[1,2]")
+			+ "," + createRecord("01pTest1", "testA", "01pClass2", "[10]", "[]")
+			+ "," + createRecord("01pTest2", "testC", "01pClass2", "[]", "[10]") + "]}";
+
+	private static String createRecord(String testClassId, String testMethodName, String classId,
+			String coveredLines, String uncoveredLines) {
+		return "{\"attributes\":{\"type\":\"ApexCodeCoverage\"},\"ApexTestClassId\":\"" + testClassId
+				+ "\",\"TestMethodName\":\"" + testMethodName + "\",\"ApexClassOrTriggerId\":\"" + classId
+				+ "\",\"NumLinesCovered\":" + coveredLines.split(",").length + ",\"NumLinesUncovered\":1,"
+				+ "\"Coverage\":{\"coveredLines\":" + coveredLines + ",\"uncoveredLines\":" + uncoveredLines + "}}";
+	}
+
+	@Test
+	public void indexIsQueriedByClassAndByTest() throws IOException {
+		List<ApexMethodCodeCoverageBean> records = new ApexCodeCoverageDecoder().decode(new StringReader(RESPONSE))
+				.getRecords();
+		Assert.assertEquals(4, records.size());
+		File indexFile = File.createTempFile("testCoverageIndex", ".idx");
+		indexFile.deleteOnExit();
+		TestCoverageIndex.write(indexFile, records);
+
+		TestCoverageIndex index = TestCoverageIndex.open(indexFile);
+		Assert.assertEquals(4, index.getEntryCount());
+
+		List<ApexMethodCodeCoverageBean> tests = index.getTestsCoveringClass("01pClass2");
+		Assert.assertEquals(2, tests.size());
+		Assert.assertEquals("01pTest1", tests.get(0).getApexTestClassID());
+		Assert.assertEquals("testA", tests.get(0).getTestMethodName());
+		Assert.assertEquals("01pTest2", tests.get(1).getApexTestClassID());
+		Assert.assertEquals(2, index.getTestClassIdsCoveringClass("01pClass2").size());
+		Assert.assertTrue(index.getTestsCoveringClass("01pUnknown").isEmpty());
+
+		List<ApexMethodCodeCoverageBean> classes = index.getClassesCoveredByTest("01pTest1", "testA");
+		Assert.assertEquals(2, classes.size());
+		Assert.assertEquals("01pClass1", classes.get(0).getApexClassorTriggerId());
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 2 }, classes.get(0).getLineCoverage().getCoveredLines()));
+		Assert.assertTrue(Arrays.equals(new int[] { 3 }, classes.get(0).getLineCoverage().getUncoveredLines()));
+		Assert.assertEquals("01pClass2", classes.get(1).getApexClassorTriggerId());
+		Assert.assertEquals(3, index.getClassesCoveredByTest("01pTest1", null).size());
+		Assert.assertTrue(index.getClassesCoveredByTest("01pTest2", "testA").isEmpty());
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.sforce.cd.apexUnit.client.codeCoverage.TestCoverageIndex;
+import com.sforce.cd.apexUnit.client.utils.TestImpactAnalyzer;
+import com.sforce.cd.apexUnit.report.ApexMethodCodeCoverageBean;
+
+public class TestImpactAnalyzerTest {
+	private static final String[] TEST_CLASS_IDS = { "01pTest1", "01pTest2", "01pTest3" };
+	private TestCoverageIndex testCoverageIndex;
+
+	@BeforeClass
+	public void buildIndex() throws IOException {
+		List<ApexMethodCodeCoverageBean> records = new ArrayList<ApexMethodCodeCoverageBean>();
+		records.add(createRecord("01pTest1", "01pClass1"));
+		records.add(createRecord("01pTest2", "01pClass1"));
+		records.add(createRecord("01pTest2", "01pClass2"));
+		records.add(createRecord("01pTest3", "01pClass3"));
+		records.add(createRecord("01pOtherTest", "01pClass3"));
+		File indexFile = File.createTempFile("testCoverageIndex", ".idx");
+		indexFile.deleteOnExit();
+		TestCoverageIndex.write(indexFile, records);
+		testCoverageIndex = TestCoverageIndex.open(indexFile);
+	}
+
+	private ApexMethodCodeCoverageBean createRecord(String testClassId, String classId) {
+		ApexMethodCodeCoverageBean record = new ApexMethodCodeCoverageBean();
+		record.setApexTestClassID(testClassId);
+		record.setTestMethodName("testMethod");
+		record.setApexClassorTriggerId(classId);
+		return record;
+	}
+
+	@Test
+	public void testsCoveringTheChangedClassesAreSelected() {
+		String[] impactedTestClassIds = TestImpactAnalyzer.selectImpactedTestClasses(TEST_CLASS_IDS,
+				Arrays.asList("01pClass2", "01pTest3", "01pOtherTest"), testCoverageIndex);
+		// in the order of the selected test classes; changed test classes
+		// are run, those not selected are not
+		Assert.assertTrue(Arrays.equals(new String[] { "01pTest2", "01pTest3" }, impactedTestClassIds));
+	}
+
+	@Test
+	public void allTestsAreRunIfTheImpactIsUnknown() {
+		// class not in the index
+		Assert.assertNull(TestImpactAnalyzer.selectImpactedTestClasses(TEST_CLASS_IDS,
+				Arrays.asList("01pClass1", "01pNewClass"), testCoverageIndex));
+		// no changes
+		Assert.assertNull(TestImpactAnalyzer.selectImpactedTestClasses(TEST_CLASS_IDS,
+				Collections.<String> emptyList(), testCoverageIndex));
+		// covered only by the test classes that are not selected
+		Assert.assertNull(TestImpactAnalyzer.selectImpactedTestClasses(new String[] { "01pTest1" },
+				Arrays.asList("01pClass3"), testCoverageIndex));
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import com.sforce.cd.apexUnit.client.codeCoverage.TestSuiteMinimizer;
+import com.sforce.cd.apexUnit.report.ApexMethodCodeCoverageBean;
+import com.sforce.cd.apexUnit.report.ApexReportBean;
+import com.sforce.cd.apexUnit.report.LineCoverage;
+
+public class TestSuiteMinimizerTest {
+
+	@Test
+	public void cheapestTestsCoveringAllTheLinesAreSelected() throws IOException {
+		List<ApexMethodCodeCoverageBean> records = new ArrayList<ApexMethodCodeCoverageBean>();
+		// the slow test covers everything the two fast tests cover together
+		records.add(createRecord("01pSlowTest", "01pClass1", 1, 2, 3, 4));
+		records.add(createRecord("01pFastTest1", "01pClass1", 1, 2));
+		records.add(createRecord("01pFastTest2", "01pClass1", 3, 4));
+		// picked first being the cheapest per line, but made redundant by
+		// the fast tests picked later
+		records.add(createRecord("01pRedundantTest", "01pClass1", 2, 3));
+		// the only test covering the second class; covered by two methods
+		records.add(createRecord("01pOtherTest", "01pClass2", 7));
+		records.add(createRecord("01pOtherTest", "01pClass2", 8));
+		ApexReportBean[] apexReportBeans = new ApexReportBean[] { createResult("01pSlowTest", 10000),
+				createResult("01pFastTest1", 1000), createResult("01pFastTest2", 500), createResult("01pFastTest2", 500),
+				createResult("01pRedundantTest", 100), createResult("01pOtherTest", 2000) };
+
+		TestSuiteMinimizer testSuiteMinimizer = new TestSuiteMinimizer(records, apexReportBeans);
+		List<String> selectedTestClassIds = testSuiteMinimizer.minimize();
+		Assert.assertEquals(3, selectedTestClassIds.size());
+		Assert.assertTrue(selectedTestClassIds.containsAll(Arrays.asList("01pFastTest1", "01pFastTest2",
+				"01pOtherTest")));
+		Assert.assertEquals(6, testSuiteMinimizer.getCoveredLineCount());
+		Assert.assertEquals(14100, testSuiteMinimizer.getFullRunTime());
+		Assert.assertEquals(4000, testSuiteMinimizer.getSelectedRunTime());
+
+		Map<String, String> testClassNames = new HashMap<String, String>();
+		testClassNames.put("01pFastTest1", "FastTest1");
+		testClassNames.put("01pFastTest2", "FastTest2");
+		testClassNames.put("01pOtherTest", "OtherTest");
+		testClassNames.put("01pRedundantTest", "RedundantTest");
+		File manifestFile = File.createTempFile("minimizedTests", ".txt");
+		manifestFile.deleteOnExit();
+		testSuiteMinimizer.writeManifest(manifestFile, testClassNames);
+		List<?> lines = FileUtils.readLines(manifestFile);
+		Assert.assertEquals(3, lines.size());
+		Assert.assertTrue(lines.contains("OtherTest"));
+	}
+
+	@Test
+	public void manifestIsNotWrittenWhenASelectedTestClassNameIsMissing() throws IOException {
+		List<ApexMethodCodeCoverageBean> records = new ArrayList<ApexMethodCodeCoverageBean>();
+		records.add(createRecord("01pTest1", "01pClass1", 1));
+		records.add(createRecord("01pTest2", "01pClass1", 2));
+		TestSuiteMinimizer testSuiteMinimizer = new TestSuiteMinimizer(records, new ApexReportBean[] {
+				createResult("01pTest1", 1000), createResult("01pTest2", 1000) });
+		Assert.assertEquals(2, testSuiteMinimizer.minimize().size());
+
+		Map<String, String> testClassNames = new HashMap<String, String>();
+		testClassNames.put("01pTest1", "Test1");
+		File manifestFile = new File(System.getProperty("java.io.tmpdir"), "minimizedTests" + System.nanoTime() + ".txt");
+		manifestFile.deleteOnExit();
+		try {
+			testSuiteMinimizer.writeManifest(manifestFile, testClassNames);
+			Assert.fail("IOException expected for the test class without a name");
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage().contains("01pTest2"));
+		}
+		Assert.assertFalse(manifestFile.exists());
+	}
+
+	private ApexMethodCodeCoverageBean createRecord(String testClassId, String classId, int... coveredLines) {
+		ApexMethodCodeCoverageBean record = new ApexMethodCodeCoverageBean();
+		record.setApexTestClassID(testClassId);
+		record.setApexClassorTriggerId(classId);
+		record.setLineCoverage(new LineCoverage(coveredLines, null));
+		return record;
+	}
+
+	private ApexReportBean createResult(String testClassId, long runTime) {
+		ApexReportBean apexReportBean = new ApexReportBean();
+		apexReportBean.setApexClassId(testClassId);
+		apexReportBean.setTimeElapsed(runTime);
+		return apexReportBean;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client.utils;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ApexClassMetadataCacheTest {
+
+	private File cacheFile;
+
+	@BeforeMethod
+	public void createCacheFile() throws IOException {
+		cacheFile = File.createTempFile("apexUnit", ".metadata");
+	}
+
+	@AfterMethod
+	public void deleteCacheFile() {
+		cacheFile.delete();
+	}
+
+	@Test
+	public void cacheWrittenIsReadBack() throws IOException {
+		ApexClassMetadataCache cache = new ApexClassMetadataCache(cacheFile);
+		cache.add(new ApexClassMetadata("01p1", "AccountService", "ns", "36.0", "1200", "2016-05-12T10:11:12Z", false));
+		cache.add(new ApexClassMetadata("01q1", "AccountTrigger", null, null, null, "2016-05-13T10:11:12Z", true));
+		cache.writeCacheFile();
+
+		ApexClassMetadataCache readCache = new ApexClassMetadataCache(cacheFile);
+		Assert.assertTrue(readCache.readCacheFile());
+		ApexClassMetadata apexClass = readCache.getApexClass("NS", "accountservice");
+		Assert.assertNotNull(apexClass);
+		Assert.assertEquals("01p1", apexClass.getId());
+		Assert.assertEquals("AccountService", apexClass.getName());
+		Assert.assertEquals("36.0", apexClass.getApiVersion());
+		Assert.assertEquals("1200", apexClass.getLengthWithoutComments());
+		Assert.assertEquals("2016-05-12T10:11:12Z", apexClass.getLastModifiedDate());
+		Assert.assertFalse(apexClass.isTrigger());
+		Assert.assertNull(readCache.getApexClass(null, "AccountService"));
+
+		ApexClassMetadata apexTrigger = readCache.getApexTrigger(null, "AccountTrigger");
+		Assert.assertNotNull(apexTrigger);
+		Assert.assertTrue(apexTrigger.isTrigger());
+		Assert.assertNull(apexTrigger.getNamespacePrefix());
+		Assert.assertNull(apexTrigger.getApiVersion());
+		Assert.assertSame(apexTrigger, readCache.getById("01q1"));
+		Assert.assertEquals(1, readCache.getApexClasses().size());
+		Assert.assertEquals(1, readCache.getApexTriggers().size());
+	}
+
+	@Test
+	public void cacheFileOfAnUnknownVersionIsIgnored() throws IOException {
+		FileUtils.writeStringToFile(cacheFile, "2\t1463047872000\t2016-05-12T10:11:12Z\n"
+				+ "C\t01p1\tAccountService\t\t36.0\t1200\t2016-05-12T10:11:12Z\n", "UTF-8");
+		ApexClassMetadataCache cache = new ApexClassMetadataCache(cacheFile);
+		Assert.assertFalse(cache.readCacheFile());
+	}
+
+	@Test
+	public void cacheFileWithAWrongFieldCountIsIgnored() throws IOException {
+		FileUtils.writeStringToFile(cacheFile, "1\t1463047872000\t2016-05-12T10:11:12Z\n"
+				+ "C\t01p1\tAccountService\t\t36.0\t1200\n", "UTF-8");
+		ApexClassMetadataCache cache = new ApexClassMetadataCache(cacheFile);
+		Assert.assertFalse(cache.readCacheFile());
+	}
+
+	@Test
+	public void renamedClassIsNotFoundByItsOldName() throws IOException {
+		ApexClassMetadataCache cache = new ApexClassMetadataCache(cacheFile);
+		cache.add(new ApexClassMetadata("01p1", "AccountService", null, "36.0", "1200", "2016-05-12T10:11:12Z", false));
+		// fetched again with the delta after the rename
+		cache.add(new ApexClassMetadata("01p1", "AccountManager", null, "36.0", "1200", "2016-05-13T10:11:12Z", false));
+		Assert.assertNull(cache.getApexClass(null, "AccountService"));
+		Assert.assertEquals("01p1", cache.getApexClass(null, "AccountManager").getId());
+		Assert.assertEquals(1, cache.getApexClasses().size());
+
+		// and neither once written and read back
+		cache.writeCacheFile();
+		ApexClassMetadataCache readCache = new ApexClassMetadataCache(cacheFile);
+		Assert.assertTrue(readCache.readCacheFile());
+		Assert.assertNull(readCache.getApexClass(null, "AccountService"));
+		Assert.assertNotNull(readCache.getApexClass(null, "AccountManager"));
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.client.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ClassRegistryTest {
+
+	@BeforeMethod
+	@AfterMethod
+	public void resetRegistry() {
+		ClassRegistry.reset();
+	}
+
+	@Test
+	public void bulkPutAndGet() {
+		ClassRegistry classRegistry = ClassRegistry.getClassRegistryInstance();
+		Map<String, String> apexClassNames = new HashMap<String, String>();
+		apexClassNames.put("01p1", "TestClass1");
+		apexClassNames.put("01p2", new String("TestClass1"));
+		classRegistry.putApexClassNames(apexClassNames);
+
+		Map<String, String> resolved = classRegistry.getApexClassNames(Arrays.asList("01p1", "01p2", "01p3"));
+		Assert.assertEquals(2, resolved.size());
+		// same names are held only once
+		Assert.assertSame(resolved.get("01p1"), resolved.get("01p2"));
+		Assert.assertEquals(2, classRegistry.getHitCount());
+		Assert.assertEquals(1, classRegistry.getMissCount());
+		Assert.assertFalse(classRegistry.containsApexClass("01p3"));
+	}
+
+	@Test
+	public void resetStartsAnEmptyRegistry() {
+		ClassRegistry.getClassRegistryInstance().putApexClassName("01p1", "TestClass1");
+		List<ApexClassMetadata> catalog = new ArrayList<ApexClassMetadata>();
+		catalog.add(new ApexClassMetadata("01p1", "TestClass1", null, null, null, null, false));
+		ClassRegistry.getClassRegistryInstance().putCatalog(false, catalog);
+		Assert.assertEquals(1, ClassRegistry.getClassRegistryInstance().getCatalog(false).size());
+		Assert.assertNull(ClassRegistry.getClassRegistryInstance().getCatalog(true));
+
+		ClassRegistry.reset();
+		Assert.assertEquals(0, ClassRegistry.getClassRegistryInstance().getApexClassCount());
+		Assert.assertNull(ClassRegistry.getClassRegistryInstance().getCatalog(false));
+	}
+}
@@ -26,6 +26,7 @@ import com.sforce.cd.apexUnit.ApexUnitUtils;
 import com.sforce.cd.apexUnit.client.connection.ConnectionHandler;
 import com.sforce.cd.apexUnit.client.fileReader.ApexManifestFileReader;
 import com.sforce.cd.apexUnit.client.utils.ApexClassFetcherUtils;
+import com.sforce.cd.apexUnit.client.utils.ClassRegistry;
 import com.sforce.soap.partner.PartnerConnection;
 import com.sforce.soap.partner.QueryResult;
 import com.sforce.soap.partner.sobject.SObject;
@@ -105,7 +106,7 @@ public class ApexManifestFileReaderTest {
 					apexClassesAsString += "\n";
 					apexClassId = sobject.getField("Id").toString();
 					apexClasses[arrayLength++] = apexClassId;
-					ApexClassFetcherUtils.apexClassMap.put(apexClassId, apexClassName);
+					ClassRegistry.getClassRegistryInstance().putApexClassName(apexClassId, apexClassName);
 				}
 				return apexClassesAsString;
 			}
@@ -126,7 +127,7 @@ public class ApexManifestFileReaderTest {
 	 * testClasses){ testClassesStrBuffer.append(testClass);
 	 * testClassesStrBuffer.append("\n"); }
 	 * ApexClassFetcherUtils.logTheFetchedApexClasses(testClasses);
-	 * Assert.assertTrue(ApexClassFetcherUtils.apexClassMap.containsKey(
+	 * Assert.assertTrue(ClassRegistry.getClassRegistryInstance().containsApexClass(
 	 * apexClasses[0]));
 	 * 
 	 * }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.report;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+public class LineCoverageTest {
+
+	@Test
+	public void countsAndPercentage() {
+		LineCoverage lineCoverage = new LineCoverage(new int[] { 5, 1, 2 }, new int[] { 9, 7, 2 });
+		// a line reported as both covered and uncovered counts as covered
+		Assert.assertEquals(3, lineCoverage.getNumLinesCovered());
+		Assert.assertEquals(2, lineCoverage.getNumLinesUncovered());
+		Assert.assertEquals(60.0, lineCoverage.getCoveragePercentage(), 0.001);
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 2, 5 }, lineCoverage.getCoveredLines()));
+		Assert.assertTrue(Arrays.equals(new int[] { 7, 9 }, lineCoverage.getUncoveredLines()));
+		Assert.assertEquals(100.0, new LineCoverage(null, null).getCoveragePercentage(), 0.001);
+	}
+
+	@Test
+	public void unionIntersectAndDiff() {
+		LineCoverage first = new LineCoverage(new int[] { 1, 2 }, new int[] { 3, 4 });
+		LineCoverage second = new LineCoverage(new int[] { 2, 3 }, new int[] { 1, 4 });
+
+		LineCoverage union = first.union(second);
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, union.getCoveredLines()));
+		Assert.assertTrue(Arrays.equals(new int[] { 4 }, union.getUncoveredLines()));
+		Assert.assertEquals(75.0, union.getCoveragePercentage(), 0.001);
+
+		LineCoverage intersection = first.intersect(second);
+		Assert.assertTrue(Arrays.equals(new int[] { 2 }, intersection.getCoveredLines()));
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 3, 4 }, intersection.getUncoveredLines()));
+
+		LineCoverage diff = first.diff(second);
+		Assert.assertTrue(Arrays.equals(new int[] { 1 }, diff.getCoveredLines()));
+		Assert.assertEquals(3, diff.getNumLinesUncovered());
+		Assert.assertTrue(diff.isCovered(1));
+		Assert.assertFalse(diff.isCovered(2));
+	}
+
+	@Test
+	public void beansAreOrderedByThePrecomputedPercentage() {
+		ApexClassCodeCoverageBean low = new ApexClassCodeCoverageBean();
+		low.setNumLinesCovered(1);
+		low.setNumLinesUncovered(3);
+		ApexClassCodeCoverageBean high = new ApexClassCodeCoverageBean();
+		high.setNumLinesCovered(3);
+		high.setNumLinesUncovered(1);
+		ApexClassCodeCoverageBean[] beans = new ApexClassCodeCoverageBean[] { high, low };
+		Arrays.sort(beans);
+		Assert.assertSame(low, beans[0]);
+		Assert.assertEquals(25.0, low.getCoveragePercentage(), 0.001);
+	}
+}
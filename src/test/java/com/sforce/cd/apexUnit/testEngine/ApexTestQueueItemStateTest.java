@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.testEngine;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+import com.sforce.cd.apexUnit.client.testEngine.ApexTestQueueItemState;
+
+public class ApexTestQueueItemStateTest {
+
+	@Test
+	public void queuedItemMovesToProcessingAndCompletes() {
+		ApexTestQueueItemState queueItemState = new ApexTestQueueItemState("709000000000001", "01p000000000001",
+				"MyTest", "Queued");
+		Assert.assertFalse(queueItemState.isTerminal());
+		Assert.assertFalse(queueItemState.isProcessing());
+
+		Assert.assertTrue(queueItemState.updateStatus("Processing"));
+		Assert.assertTrue(queueItemState.isProcessing());
+		// polling the same status again is not a transition
+		Assert.assertFalse(queueItemState.updateStatus("Processing"));
+
+		Assert.assertTrue(queueItemState.updateStatus("Completed"));
+		Assert.assertTrue(queueItemState.isTerminal());
+	}
+
+	@Test
+	public void terminalItemIgnoresFurtherUpdates() {
+		ApexTestQueueItemState queueItemState = new ApexTestQueueItemState("709000000000002", "01p000000000002",
+				"MyOtherTest", "Aborted");
+		Assert.assertTrue(queueItemState.isTerminal());
+		Assert.assertFalse(queueItemState.updateStatus("Processing"));
+		Assert.assertEquals("Aborted", queueItemState.getStatus());
+	}
+}
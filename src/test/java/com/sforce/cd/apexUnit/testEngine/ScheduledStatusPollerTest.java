@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.sforce.cd.apexUnit.testEngine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+
+import junit.framework.Assert;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.sforce.cd.apexUnit.client.testEngine.ScheduledStatusPoller;
+
+public class ScheduledStatusPollerTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ScheduledStatusPollerTest.class);
+	private static final long POLLING_INTERVAL_IN_MILLIS = 100L;
+	private static final int NUMBER_OF_POLLS = 10;
+
+	@Test
+	public void awaitNextPollWaitsForThePollingInterval() throws Exception {
+		ScheduledStatusPoller poller = new ScheduledStatusPoller(POLLING_INTERVAL_IN_MILLIS);
+		try {
+			long start = System.currentTimeMillis();
+			String result = poller.awaitNextPoll(new Callable<String>() {
+				public String call() {
+					return "Completed";
+				}
+			});
+			Assert.assertEquals("Completed", result);
+			Assert.assertTrue(System.currentTimeMillis() - start >= POLLING_INTERVAL_IN_MILLIS);
+		} finally {
+			poller.shutdown();
+		}
+	}
+
+	// regression test for the busy wait that used to pin a CPU core while the
+	// tests were executing
+	@Test
+	public void pollerStaysIdleWhileWaiting() throws Exception {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (!threadMXBean.isThreadCpuTimeSupported()) {
+			LOG.warn("Thread CPU time measurement not supported by the JVM. Skipping the test");
+			return;
+		}
+		threadMXBean.setThreadCpuTimeEnabled(true);
+		ScheduledStatusPoller poller = new ScheduledStatusPoller(POLLING_INTERVAL_IN_MILLIS);
+		Callable<Long> pollTask = new Callable<Long>() {
+			public Long call() {
+				return Thread.currentThread().getId();
+			}
+		};
+		try {
+			// warm up so that class loading is not accounted for
+			long pollerThreadId = poller.awaitNextPoll(pollTask);
+
+			long startCpuTime = threadMXBean.getCurrentThreadCpuTime()
+					+ threadMXBean.getThreadCpuTime(pollerThreadId);
+			long start = System.nanoTime();
+			for (int i = 0; i < NUMBER_OF_POLLS; i++) {
+				poller.awaitNextPoll(pollTask);
+			}
+			long elapsedTime = System.nanoTime() - start;
+			long cpuTime = threadMXBean.getCurrentThreadCpuTime() + threadMXBean.getThreadCpuTime(pollerThreadId)
+					- startCpuTime;
+
+			LOG.info("CPU time used while polling: " + cpuTime / 1000000 + " ms over " + elapsedTime / 1000000
+					+ " ms");
+			Assert.assertTrue(elapsedTime >= NUMBER_OF_POLLS * POLLING_INTERVAL_IN_MILLIS * 1000000);
+			// near 0% CPU: allow upto 5% of the elapsed time
+			Assert.assertTrue(cpuTime < elapsedTime / 20);
+		} finally {
+			poller.shutdown();
+		}
+	}
+}